@@ -8,6 +8,7 @@ plugins {
     id("java-library")
     id("maven-publish")
     id("signing")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.whichlicense.sourcing"
@@ -56,6 +57,12 @@ tasks.getByName<Test>("test") {
     jvmArgs("--enable-preview")
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    jvmArgsAppend.add("--enable-preview")
+    resultFormat.set("JSON")
+}
+
 tasks.withType<Javadoc> {
     val javadocOptions = options as CoreJavadocOptions
     javadocOptions.addStringOption("source", "20")
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.whichlicense.metadata.sourcing.repository.github.internal.GithubArchiveHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures download and extraction throughput of a zipball per archive mode. The mode
+ * name is passed through to {@code github.archive.mode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+    @Param({"1048576", "16777216", "67108864"})
+    int archiveSize;
+    @Param({"staged", "streaming", "zipfs"})
+    String mode;
+    private GitHubStandIn standIn;
+    private StandInConfiguration configuration;
+    private URL zipball;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = new GitHubStandIn(0, archiveSize);
+        configuration = standIn.configuration().with("github.archive.mode", mode);
+        zipball = new URL(standIn.url() + "/repos/whichlicense/repository/zipball/" + GitHubStandIn.SHA);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Benchmark
+    public long downloadAndExtract() throws IOException {
+        var root = GithubArchiveHelper.resolveRoot("whichlicense", "repository", GitHubStandIn.SHA, zipball, configuration);
+        try (var files = Files.walk(root)) {
+            return files.count();
+        } finally {
+            release(root);
+        }
+    }
+
+    static void release(Path root) throws IOException {
+        if (root.getFileSystem() != FileSystems.getDefault()) {
+            root.getFileSystem().close();
+            return;
+        }
+        var parent = root.getParent();
+        var scratch = parent != null && parent.getFileName().toString().startsWith("whichlicense-archive-") ? parent : root;
+        try (Stream<Path> tree = Files.walk(scratch)) {
+            tree.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
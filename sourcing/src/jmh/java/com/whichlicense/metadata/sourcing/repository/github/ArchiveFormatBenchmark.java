@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.whichlicense.metadata.sourcing.repository.github.internal.GithubArchiveHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the zipball and tarball formats per archive mode. Both archives of the stand-in
+ * hold the same files, so the difference is the cost of staging and inflating the format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveFormatBenchmark {
+    @Param({"16777216", "134217728"})
+    int archiveSize;
+    @Param({"zipball", "tarball"})
+    String format;
+    @Param({"staged", "streaming"})
+    String mode;
+    private GitHubStandIn standIn;
+    private StandInConfiguration configuration;
+    private URL archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = new GitHubStandIn(0, archiveSize);
+        configuration = standIn.configuration().with("github.archive.mode", mode).with("github.archive.format", format);
+        archive = new URL("%s/repos/whichlicense/repository/%s/%s".formatted(standIn.url(), format, GitHubStandIn.SHA));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Benchmark
+    public long downloadAndExtract() throws IOException {
+        var root = GithubArchiveHelper.resolveRoot("whichlicense", "repository", GitHubStandIn.SHA, archive, configuration);
+        try (var files = Files.walk(root)) {
+            return files.count();
+        } finally {
+            ArchiveBenchmark.release(root);
+        }
+    }
+}
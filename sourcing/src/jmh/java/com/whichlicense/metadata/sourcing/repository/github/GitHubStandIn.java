@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Embedded stand-in for the GitHub REST API and codeload. Every repository exists, has a
+ * {@code main} branch pointing at {@link #SHA}, a configurable number of tags of which the
+ * newest points at the head, and a synthetic zipball and tarball of the same files with a
+ * configurable total size. The JSON
+ * bodies follow the shape of recorded api.github.com responses, reduced to the fields the
+ * resolver reads.
+ */
+final class GitHubStandIn implements AutoCloseable {
+    static final String SHA = "6f3a0c1e9b2d4f5a8c7e6d5b4a3f2e1d0c9b8a7f";
+    private static final int PAGE_SIZE = 100;
+    private static final Pattern REPOSITORY = Pattern.compile("/repos/([^/]+)/([^/]+)(/.*)?");
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int tags;
+    private final byte[] zipball;
+    private final byte[] tarball;
+
+    GitHubStandIn(int tags, int archiveSize) throws IOException {
+        this.tags = tags;
+        var files = files(archiveSize);
+        this.zipball = zipball(files);
+        this.tarball = tarball(files);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    String url() {
+        return "http://%s:%d".formatted(server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    /**
+     * @return a configuration pointing the resolver at this stand-in, with the ref cache
+     * disabled so every operation reaches the server
+     */
+    StandInConfiguration configuration() {
+        return new StandInConfiguration()
+                .with("github.api.url", url())
+                .with("github.raw.url", url() + "/raw")
+                .with("github.cache.refs.size", 0);
+    }
+
+    static String tag(int index) {
+        return "v%d.%d.%d".formatted(index / 100, index / 10 % 10, index % 10);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var matcher = REPOSITORY.matcher(exchange.getRequestURI().getPath());
+            if (!matcher.matches()) {
+                respond(exchange, 404, "{\"message\":\"Not Found\"}");
+                return;
+            }
+            var base = "%s/repos/%s/%s".formatted(url(), matcher.group(1), matcher.group(2));
+            var rest = matcher.group(3) == null ? "" : matcher.group(3);
+            if (rest.isEmpty()) {
+                respond(exchange, 200, """
+                        {"name":"%s","full_name":"%s/%s","default_branch":"main","branches_url":"%s/branches{/branch}",\
+                        "archive_url":"%s/{archive_format}{/ref}"}""".formatted(matcher.group(2), matcher.group(1),
+                        matcher.group(2), base, base));
+            } else if (rest.equals("/branches/main")) {
+                respond(exchange, 200, """
+                        {"name":"main","commit":{"sha":"%s","url":"%s/commits/%s"},"protected":false}"""
+                        .formatted(SHA, base, SHA));
+            } else if (rest.startsWith("/git/ref/tags/")) {
+                var tag = rest.substring("/git/ref/tags/".length());
+                respond(exchange, 200, ref(tag, tag.equals(tag(tags - 1)) ? SHA : filler(tag)));
+            } else if (rest.equals("/git/refs/tags")) {
+                tags(exchange, base);
+            } else if (rest.startsWith("/zipball/")) {
+                exchange.getResponseHeaders().add("Content-Type", "application/zip");
+                exchange.sendResponseHeaders(200, zipball.length);
+                exchange.getResponseBody().write(zipball);
+            } else if (rest.startsWith("/tarball/")) {
+                exchange.getResponseHeaders().add("Content-Type", "application/x-gzip");
+                exchange.sendResponseHeaders(200, tarball.length);
+                exchange.getResponseBody().write(tarball);
+            } else {
+                respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        }
+    }
+
+    private void tags(HttpExchange exchange, String base) throws IOException {
+        if (tags == 0) {
+            respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            return;
+        }
+        var query = exchange.getRequestURI().getQuery();
+        var page = query == null ? 1 : Pattern.compile("(?:^|&)page=(\\d+)").matcher(query).results()
+                .map(result -> Integer.parseInt(result.group(1))).findFirst().orElse(1);
+        var from = (page - 1) * PAGE_SIZE;
+        var to = Math.min(tags, from + PAGE_SIZE);
+        if (to < tags) exchange.getResponseHeaders().add("Link",
+                "<%s/git/refs/tags?per_page=%d&page=%d>; rel=\"next\"".formatted(base, PAGE_SIZE, page + 1));
+        respond(exchange, 200, IntStream.range(from, to)
+                .mapToObj(index -> ref(tag(index), index == tags - 1 ? SHA : filler(tag(index))))
+                .collect(Collectors.joining(",", "[", "]")));
+    }
+
+    private static String ref(String tag, String sha) {
+        return """
+                {"ref":"refs/tags/%s","node_id":"REF_%s","object":{"sha":"%s","type":"commit"}}""".formatted(tag, tag, sha);
+    }
+
+    private static String filler(String tag) {
+        return "%040x".formatted(tag.hashCode() & 0xffffffffL);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().add("X-RateLimit-Limit", "5000");
+        exchange.getResponseHeaders().add("X-RateLimit-Remaining", "4999");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * @return the archive entries in order, directories mapped to {@code null}
+     */
+    private static Map<String, byte[]> files(int size) {
+        var random = new Random(42);
+        var root = "owner-repository-" + SHA.substring(0, 7) + "/";
+        var files = new LinkedHashMap<String, byte[]>();
+        files.put(root, null);
+        files.put(root + "LICENSE", "Apache License\nVersion 2.0, January 2004\n".getBytes(StandardCharsets.UTF_8));
+        files.put(root + "package.json", "{\"name\":\"repository\",\"license\":\"Apache-2.0\"}".getBytes(StandardCharsets.UTF_8));
+        files.put(root + "src/", null);
+        for (int file = 0, written = 0; written < size; file++) {
+            var chunk = new byte[Math.min(64 * 1024, Math.max(1, size - written))];
+            random.nextBytes(chunk);
+            files.put(root + "src/file-%d.bin".formatted(file), chunk);
+            written += chunk.length;
+        }
+        return files;
+    }
+
+    private static byte[] zipball(Map<String, byte[]> files) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            for (var file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                if (file.getValue() != null) zip.write(file.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] tarball(Map<String, byte[]> files) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var tar = new GZIPOutputStream(bytes)) {
+            for (var file : files.entrySet()) {
+                var data = file.getValue() == null ? new byte[0] : file.getValue();
+                var header = new byte[512];
+                var name = file.getKey().getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(name, 0, header, 0, name.length);
+                field(header, 100, 8, file.getValue() == null ? 0755 : 0644);
+                field(header, 124, 12, data.length);
+                header[156] = (byte) (file.getValue() == null ? '5' : '0');
+                System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+                Arrays.fill(header, 148, 156, (byte) ' ');
+                var checksum = 0;
+                for (var value : header) checksum += value & 0xff;
+                field(header, 148, 7, checksum);
+                tar.write(header);
+                tar.write(data);
+                tar.write(new byte[(512 - data.length % 512) % 512]);
+            }
+            tar.write(new byte[1024]);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void field(byte[] header, int offset, int length, long value) {
+        var octal = "%0" + (length - 1) + "o";
+        System.arraycopy(octal.formatted(value).getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Resolves repository URLs end to end against the {@link GitHubStandIn}. Archives are
+ * mounted as zip file systems, so closing a source releases everything it created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+    @Param({"10", "1000"})
+    int tags;
+    @Param({"65536", "4194304"})
+    int archiveSize;
+    @Param({"32"})
+    int repositories;
+    private GitHubStandIn standIn;
+    private StandInConfiguration configuration;
+    private GitHubMetadataRepositorySourceResolver resolver;
+    private List<URL> urls;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = new GitHubStandIn(tags, archiveSize);
+        configuration = standIn.configuration().with("github.archive.mode", "zipfs");
+        resolver = new GitHubMetadataRepositorySourceResolver(null);
+        urls = IntStream.range(0, repositories).mapToObj(index -> url("https://github.com/whichlicense/repository-" + index)).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Benchmark
+    public void singleResolve(Blackhole blackhole) {
+        try (var source = (GitHubMetadataRepositorySource) resolver.handle(urls.get(0), configuration)) {
+            blackhole.consume(source.tags());
+        }
+    }
+
+    @Benchmark
+    public void releaseResolve(Blackhole blackhole) {
+        var url = url("https://github.com/whichlicense/repository-0/releases/tag/" + GitHubStandIn.tag(tags - 1));
+        try (var source = (GitHubMetadataRepositorySource) resolver.handle(url, configuration)) {
+            blackhole.consume(source.commit());
+        }
+    }
+
+    @Benchmark
+    public void bulkResolve(Blackhole blackhole) {
+        resolver.handleAll(urls, configuration).forEach(resolution -> {
+            if (resolution.source() instanceof GitHubMetadataRepositorySource source) {
+                try (source) {
+                    blackhole.consume(source.tags());
+                }
+            }
+        });
+    }
+
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
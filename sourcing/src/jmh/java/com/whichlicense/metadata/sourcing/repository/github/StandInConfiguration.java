@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.whichlicense.configuration.KeyedConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+final class StandInConfiguration implements KeyedConfiguration {
+    private final Map<String, Object> values = new HashMap<>();
+
+    StandInConfiguration with(String key, Object value) {
+        values.put(key, value);
+        return this;
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return values.get(key) instanceof Boolean value && value;
+    }
+
+    @Override
+    public void hasBoolean(String key, Consumer<Boolean> consumer) {
+        if (values.get(key) instanceof Boolean value) consumer.accept(value);
+    }
+
+    @Override
+    public int getInteger(String key) {
+        return values.get(key) instanceof Integer value ? value : 0;
+    }
+
+    @Override
+    public void hasInteger(String key, Consumer<Integer> consumer) {
+        if (values.get(key) instanceof Integer value) consumer.accept(value);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return values.get(key) instanceof Number value ? value.longValue() : 0;
+    }
+
+    @Override
+    public void hasLong(String key, Consumer<Long> consumer) {
+        if (values.get(key) instanceof Number value) consumer.accept(value.longValue());
+    }
+
+    @Override
+    public String getString(String key) {
+        return values.get(key) instanceof String value ? value : null;
+    }
+
+    @Override
+    public void hasString(String key, Consumer<String> consumer) {
+        if (values.get(key) instanceof String value) consumer.accept(value);
+    }
+
+    @Override
+    public void setBoolean(String key, boolean value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void setInteger(String key, int value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void setLong(String key, long value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void setString(String key, String value) {
+        values.put(key, value);
+    }
+}
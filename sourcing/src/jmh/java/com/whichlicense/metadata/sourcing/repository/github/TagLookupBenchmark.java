@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists every tag of a repository with a huge number of tags, once filtered to the head
+ * commit and once as the full commit-to-tags index used by bulk resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagLookupBenchmark {
+    @Param({"1000", "10000"})
+    int tags;
+    private GitHubStandIn standIn;
+    private StandInConfiguration configuration;
+    private GitHubMetadataRepositorySourceResolver resolver;
+    private String tagsForShaURL;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = new GitHubStandIn(tags, 1024);
+        configuration = standIn.configuration();
+        resolver = new GitHubMetadataRepositorySourceResolver(null);
+        tagsForShaURL = standIn.url() + "/repos/whichlicense/repository/git/refs/tags";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Benchmark
+    public Set<String> tagsForSha() {
+        return resolver.lookupTagsForSha(tagsForShaURL, GitHubStandIn.SHA, configuration);
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> tagIndex() {
+        return resolver.lookupTagIndex(tagsForShaURL, configuration);
+    }
+}
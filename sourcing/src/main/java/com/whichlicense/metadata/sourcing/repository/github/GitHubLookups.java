@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.internal.Coordinates;
+import com.whichlicense.metadata.sourcing.repository.github.internal.Details;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubGraphQL;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubGraphQL.Head;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Hit;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.COMMIT;
+
+/**
+ * The lookups of a single resolution, or of a whole bulk resolution when shared. Shared
+ * lookups memoize repository details, ref resolutions and the tag index of a repository,
+ * so every URL pointing into the same repository reuses them.
+ */
+final class GitHubLookups {
+    private final GitHubMetadataRepositorySourceResolver resolver;
+    private final ReadableKeyedConfiguration configuration;
+    private final Map<List<String>, CompletableFuture<Object>> memo;
+    private final CompletableFuture<Map<Coordinates, Head>> heads;
+
+    private GitHubLookups(GitHubMetadataRepositorySourceResolver resolver,
+                          ReadableKeyedConfiguration configuration, boolean shared, CompletableFuture<Map<Coordinates, Head>> heads) {
+        this.resolver = resolver;
+        this.configuration = configuration;
+        this.memo = shared ? new ConcurrentHashMap<>() : null;
+        this.heads = heads;
+    }
+
+    static GitHubLookups direct(GitHubMetadataRepositorySourceResolver resolver, ReadableKeyedConfiguration configuration) {
+        return new GitHubLookups(resolver, configuration, false, null);
+    }
+
+    static GitHubLookups shared(GitHubMetadataRepositorySourceResolver resolver, ReadableKeyedConfiguration configuration,
+                                CompletableFuture<Map<Coordinates, Head>> heads) {
+        return new GitHubLookups(resolver, configuration, true, heads);
+    }
+
+    Head head(Coordinates repository) {
+        if (heads != null) return join(heads).get(repository);
+        return GitHubGraphQL.lookupHeads(List.of(repository), configuration).get(repository);
+    }
+
+    Details details(String username, String repository) {
+        return memoize(List.of("details", username, repository),
+                () -> resolver.lookup(username, repository, configuration));
+    }
+
+    String shaForBranch(String branchesURL, String branch) {
+        return memoize(List.of("branch", branchesURL, branch),
+                () -> resolver.lookupShaForBranch(branchesURL, branch, configuration));
+    }
+
+    String shaForTag(String tagsURL, String tag) {
+        return memoize(List.of("tag", tagsURL, tag),
+                () -> resolver.lookupShaForTag(tagsURL, tag, configuration));
+    }
+
+    Set<String> tagsForSha(String tagsForShaURL, String sha) {
+        if (memo == null) return resolver.lookupTagsForSha(tagsForShaURL, sha, configuration);
+        if (GitHubRefCache.shared(configuration).lookup(COMMIT, tagsForShaURL + "#" + sha) instanceof Hit<?>(Set<?> tags)) {
+            return tags.stream().map(String.class::cast).collect(Collectors.toUnmodifiableSet());
+        }
+        Map<String, Set<String>> index = memoize(List.of("tags", tagsForShaURL),
+                () -> resolver.lookupTagIndex(tagsForShaURL, configuration));
+        return Set.copyOf(index.getOrDefault(sha, Set.of()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T memoize(List<String> key, Supplier<T> lookup) {
+        if (memo == null) return lookup.get();
+        var future = new CompletableFuture<Object>();
+        var existing = memo.putIfAbsent(key, future);
+        if (existing != null) return (T) join(existing);
+        try {
+            var value = lookup.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException exception) {
+            future.completeExceptionally(exception);
+            throw exception;
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw exception;
+        }
+    }
+}
@@ -10,12 +10,16 @@ import com.whichlicense.metadata.sourcing.MetadataOrigin;
 import com.whichlicense.metadata.sourcing.MetadataOrigin.RawURL;
 import com.whichlicense.metadata.sourcing.repository.MetadataRepositorySource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Set;
 
-public record GitHubMetadataRepositorySource(String username, String repository, String branch, Set<String> tags, String commit, Path path, MetadataOrigin origin) implements MetadataRepositorySource {
+public record GitHubMetadataRepositorySource(String username, String repository, String branch, Set<String> tags, String commit, Path path, MetadataOrigin origin) implements MetadataRepositorySource, AutoCloseable {
     public GitHubMetadataRepositorySource(String username, String repository, String branch, Set<String> tags, String commit, Path path, URL url) {
         this(username, repository, branch, tags, commit, path, new RawURL(Objects.requireNonNull(url)));
     }
@@ -29,4 +33,22 @@ public record GitHubMetadataRepositorySource(String username, String repository,
         Objects.requireNonNull(path);
         Objects.requireNonNull(origin);
     }
+
+    /**
+     * Closes the file system backing {@link #path()} when the source was resolved into a
+     * zip file system. Sources on the default file system are left untouched.
+     */
+    @Override
+    public void close() {
+        var fileSystem = path.getFileSystem();
+        if (fileSystem == FileSystems.getDefault() || !fileSystem.isOpen()) return;
+        try {
+            fileSystem.close();
+        } catch (NoSuchFileException e) {
+            // the zip provider resolves the archive after closing, which is unlinked once mounted
+            if (fileSystem.isOpen()) throw new UncheckedIOException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -6,33 +6,78 @@
  */
 package com.whichlicense.metadata.sourcing.repository.github;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.whichlicense.configuration.ReadableKeyedConfiguration;
 import com.whichlicense.metadata.sourcing.MetadataSource;
 import com.whichlicense.metadata.sourcing.MetadataSourceResolver;
-import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiForbiddenException;
-import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiUnauthorizedException;
+import com.whichlicense.metadata.sourcing.repository.github.internal.ArchiveFormat;
+import com.whichlicense.metadata.sourcing.repository.github.internal.Branch;
+import com.whichlicense.metadata.sourcing.repository.github.internal.Coordinates;
 import com.whichlicense.metadata.sourcing.repository.github.internal.Details;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubEndpoints;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubGraphQL;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubGraphQL.Head;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubHttpTransport;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubJson;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubMirror;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRateLimiter;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRescanIndex;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Hit;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubTelemetry;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitRef;
 import com.whichlicense.metadata.sourcing.repository.github.internal.GithubArchiveHelper;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.BRANCH;
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.COMMIT;
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.TAG;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 
 public record GitHubMetadataRepositorySourceResolver(MetadataSourceResolver next) implements MetadataSourceResolver {
-    private static final String TAGS = "https://api.github.com/repos/%s/%s/git/ref/tags{/tag}";
-    private static final String TAGS_FOR_SHA = "https://api.github.com/repos/%s/%s/git/refs/tags";
+    private static final String REPOSITORY = "%s/repos/%s/%s";
+    private static final String TAGS = REPOSITORY + "/git/ref/tags{/tag}";
+    private static final String TAGS_FOR_SHA = REPOSITORY + "/git/refs/tags";
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    public static List<GitHubRateLimit> rateLimits() {
+        return GitHubRateLimiter.snapshot();
+    }
+
+    public static void metrics(GitHubMetrics metrics) {
+        GitHubTelemetry.install(metrics);
+    }
+
+    public static GitHubRefCacheStats refCacheStats() {
+        return GitHubRefCache.stats();
+    }
 
     @Override
     public boolean handles(URL url, ReadableKeyedConfiguration configuration) {
@@ -44,51 +89,108 @@ public record GitHubMetadataRepositorySourceResolver(MetadataSourceResolver next
     // -> show and autocomplete on the frontend
     @Override
     public MetadataSource handle(URL originURL, ReadableKeyedConfiguration configuration) {
+        return join(handleAsync(originURL, configuration));
+    }
+
+    public CompletableFuture<MetadataSource> handleAsync(URL originURL, ReadableKeyedConfiguration configuration) {
+        return fork(() -> resolve(originURL, configuration, GitHubLookups.direct(this, configuration)));
+    }
+
+    public Stream<GitHubResolution> handleAll(Stream<URL> urls, ReadableKeyedConfiguration configuration) {
+        return handleAll(urls.toList(), configuration);
+    }
+
+    public Stream<GitHubResolution> handleAll(Collection<URL> urls, ReadableKeyedConfiguration configuration) {
+        var distinct = new LinkedHashMap<String, URL>();
+        urls.forEach(url -> distinct.putIfAbsent(url.toExternalForm(), url));
+        var handled = distinct.values().stream().filter(url -> handles(url, configuration)).toList();
+
+        var heads = GitHubGraphQL.enabled(configuration) ? fork(() -> GitHubGraphQL.lookupHeads(handled.stream()
+                .map(url -> parts(url).toList()).filter(parts -> parts.size() < 4)
+                .map(parts -> new Coordinates(parts.get(0), parts.get(1)))
+                .filter(coordinates -> GitHubMirror.of(coordinates.username(), coordinates.repository(), configuration) == null)
+                .toList(), configuration)) : null;
+        var lookups = GitHubLookups.shared(this, configuration, heads);
+
+        var parallelism = new int[]{16};
+        configuration.hasInteger("github.bulk.parallelism", value -> parallelism[0] = value);
+        var permits = new Semaphore(Math.max(1, parallelism[0]));
+        var results = new LinkedBlockingQueue<GitHubResolution>();
+        for (var url : distinct.values()) {
+            fork(() -> {
+                if (!handles(url, configuration)) return null;
+                permits.acquireUninterruptibly();
+                try {
+                    return resolve(url, configuration, lookups);
+                } finally {
+                    permits.release();
+                }
+            }).whenComplete((source, failure) -> results.add(new GitHubResolution(url, source, unwrap(failure))));
+        }
+        return Stream.generate(() -> take(results)).limit(distinct.size());
+    }
+
+    private MetadataSource resolve(URL originURL, ReadableKeyedConfiguration configuration, GitHubLookups lookups) {
         var parts = parts(originURL).toList();
         var username = parts.get(0);
         var repository = parts.get(1);
 
-        var mapper = new ObjectMapper();
+        if (GitHubMirror.of(username, repository, configuration) instanceof GitHubMirror mirror
+                && mirrored(mirror, parts, originURL, configuration) instanceof MetadataSource source) {
+            return source;
+        }
+
+        var api = GitHubEndpoints.api(configuration);
+        var tagsForSha = TAGS_FOR_SHA.formatted(api, username, repository);
+        var commitTags = parts.size() >= 4 && Objects.equals(parts.get(2), "commit") && GitHubRescanIndex.of(configuration) == null
+                ? fork(() -> lookups.tagsForSha(tagsForSha, parts.get(3))) : null;
 
         try {
-            if (lookup(username, repository, mapper, configuration) instanceof Details(
+            if (parts.size() < 4 && GitHubGraphQL.enabled(configuration)) {
+                var coordinates = new Coordinates(username, repository);
+                if (lookups.head(coordinates) instanceof Head(
+                        var defaultBranch, var sha, var tags
+                ) && constructDownloadURL(GitHubGraphQL.archiveURL(coordinates, configuration), sha, configuration) instanceof String downloadURL) {
+                    return source(username, repository, defaultBranch, () -> tags != null ? tags
+                            : lookups.tagsForSha(tagsForSha, sha), sha, downloadURL, originURL, configuration);
+                }
+            }
+
+            if (lookups.details(username, repository) instanceof Details(
                     var defaultBranch, var branches, var archives
             )) {
-                var tagsForSha = TAGS_FOR_SHA.formatted(username, repository);
                 if (parts.size() < 4) {
-                    if (lookupShaForBranch(branches, defaultBranch, mapper, configuration) instanceof String sha
-                            && constructDownloadURL(archives, sha) instanceof String downloadURL) {
-                        var tags = lookupTagsForSha(tagsForSha, sha, mapper, configuration);
-                        return new GitHubMetadataRepositorySource(username, repository, defaultBranch, tags,
-                                sha, GithubArchiveHelper.resolveRoot(new URL(downloadURL), configuration), originURL);
+                    if (lookups.shaForBranch(branches, defaultBranch) instanceof String sha
+                            && constructDownloadURL(archives, sha, configuration) instanceof String downloadURL) {
+                        return source(username, repository, defaultBranch, () -> lookups.tagsForSha(tagsForSha, sha),
+                                sha, downloadURL, originURL, configuration);
                     } else return null;
                 } else {
                     return switch (parts.get(2)) {
                         case "commit" -> {
                             //TODO lookup the referenced branch instead of assuming the default one
-                            if (constructDownloadURL(archives, parts.get(3)) instanceof String downloadURL) {
-                                var tags = lookupTagsForSha(tagsForSha, parts.get(3), mapper, configuration);
-                                yield new GitHubMetadataRepositorySource(username, repository, defaultBranch, tags,
-                                        parts.get(3), GithubArchiveHelper.resolveRoot(new URL(downloadURL), configuration), originURL);
+                            if (constructDownloadURL(archives, parts.get(3), configuration) instanceof String downloadURL) {
+                                var sha = parts.get(3);
+                                yield source(username, repository, defaultBranch, () -> commitTags != null ? join(commitTags)
+                                        : lookups.tagsForSha(tagsForSha, sha), sha, downloadURL, originURL, configuration);
                             } else yield null;
                         }
                         case "tree" -> {
                             //TODO fallback to commit checking if branch does not exist
                             var branch = remaining(parts, 3);
-                            if (lookupShaForBranch(branches, branch, mapper, configuration) instanceof String sha
-                                    && constructDownloadURL(archives, sha) instanceof String downloadURL) {
-                                var tags = lookupTagsForSha(tagsForSha, sha, mapper, configuration);
-                                yield new GitHubMetadataRepositorySource(username, repository, branch, tags,
-                                        sha, GithubArchiveHelper.resolveRoot(new URL(downloadURL), configuration), originURL);
+                            if (lookups.shaForBranch(branches, branch) instanceof String sha
+                                    && constructDownloadURL(archives, sha, configuration) instanceof String downloadURL) {
+                                yield source(username, repository, branch, () -> lookups.tagsForSha(tagsForSha, sha),
+                                        sha, downloadURL, originURL, configuration);
                             } else yield null;
                         }
                         case "releases" -> {
-                            var tags = TAGS.formatted(username, repository);
+                            var tags = TAGS.formatted(api, username, repository);
                             if (parts.size() >= 5 && Objects.equals(parts.get(3), "tag")
-                                    && lookupShaForTag(tags, parts.get(4), mapper, configuration) instanceof String sha
-                                    && constructDownloadURL(archives, sha) instanceof String downloadURL) {
-                                yield new GitHubMetadataRepositorySource(username, repository, defaultBranch, Set.of(parts.get(4)),
-                                        sha, GithubArchiveHelper.resolveRoot(new URL(downloadURL), configuration), originURL);
+                                    && lookups.shaForTag(tags, parts.get(4)) instanceof String sha
+                                    && constructDownloadURL(archives, sha, configuration) instanceof String downloadURL) {
+                                yield source(username, repository, defaultBranch, () -> Set.of(parts.get(4)),
+                                        sha, downloadURL, originURL, configuration);
                             } else yield null;
                         }
                         default -> null;
@@ -100,6 +202,110 @@ public record GitHubMetadataRepositorySourceResolver(MetadataSourceResolver next
         }
     }
 
+    /**
+     * Resolves the URL from a local mirror of the repository, or returns {@code null} if the
+     * mirror does not contain the referenced branch, tag or commit or fails to export its tree.
+     */
+    private MetadataSource mirrored(GitHubMirror mirror, List<String> parts, URL originURL,
+                                    ReadableKeyedConfiguration configuration) {
+        var username = parts.get(0);
+        var repository = parts.get(1);
+        var defaultBranch = mirror.defaultBranch();
+        if (defaultBranch == null) return null;
+        var branch = defaultBranch;
+        Supplier<Set<String>> tags = null;
+        String sha = null;
+        if (parts.size() < 4) {
+            sha = mirror.shaForBranch(defaultBranch);
+        } else switch (parts.get(2)) {
+            case "commit" -> sha = mirror.commit(parts.get(3));
+            case "tree" -> {
+                branch = remaining(parts, 3);
+                sha = mirror.shaForBranch(branch);
+            }
+            case "releases" -> {
+                if (parts.size() >= 5 && Objects.equals(parts.get(3), "tag")) {
+                    var tag = parts.get(4);
+                    tags = () -> Set.of(tag);
+                    sha = mirror.shaForTag(parts.get(4));
+                }
+            }
+            default -> {
+            }
+        }
+        if (sha == null) return null;
+        var commit = sha;
+        if (tags == null) tags = () -> mirror.tagsForSha(commit);
+        return source(username, repository, branch, tags, sha, () -> {
+            RuntimeException failure = null;
+            try {
+                var root = GithubArchiveHelper.exportRoot(username, repository, commit, mirror, configuration);
+                if (root != null) return root;
+            } catch (RuntimeException exception) {
+                failure = exception;
+            }
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Exporting %s/%s@%s from the mirror failed, falling back to the API"
+                    .formatted(username, repository, commit), failure);
+            return null;
+        }, originURL, configuration);
+    }
+
+    private GitHubMetadataRepositorySource source(String username, String repository, String branch, Supplier<Set<String>> tags,
+                                                  String sha, String downloadURL, URL originURL, ReadableKeyedConfiguration configuration) throws MalformedURLException {
+        var url = new URL(downloadURL);
+        return source(username, repository, branch, tags, sha,
+                () -> GithubArchiveHelper.resolveRoot(username, repository, sha, url, configuration), originURL, configuration);
+    }
+
+    private GitHubMetadataRepositorySource source(String username, String repository, String branch, Supplier<Set<String>> tags,
+                                                  String sha, Supplier<Path> archive, URL originURL, ReadableKeyedConfiguration configuration) {
+        var index = GitHubRescanIndex.of(configuration);
+        var variant = index == null ? null : GithubArchiveHelper.variant(configuration);
+        if (index != null && index.unchanged(originURL, variant, sha) instanceof GitHubRescanIndex.Entry entry) {
+            // tags can be added to an unchanged commit, so only the archive is reused; a failed
+            // listing also comes back empty and keeps the recorded tags
+            var current = tags.get();
+            var source = new GitHubMetadataRepositorySource(username, repository, branch,
+                    current == null || current.isEmpty() ? entry.tags() : current, sha, entry.root(), originURL);
+            index.record(originURL, variant, sha, source.tags(), entry.root());
+            return source;
+        }
+        var pending = fork(tags);
+        var root = archive.get();
+        if (root == null) return null;
+        var source = new GitHubMetadataRepositorySource(username, repository, branch, join(pending), sha, root, originURL);
+        if (index != null) index.record(originURL, variant, sha, source.tags(), root);
+        return source;
+    }
+
+    private static <T> CompletableFuture<T> fork(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw exception;
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable failure) {
+        if (failure == null) return null;
+        var cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+    }
+
+    private static GitHubResolution take(BlockingQueue<GitHubResolution> results) {
+        try {
+            return results.take();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(exception);
+        }
+    }
+
     private Stream<String> parts(URL url) {
         return Stream.of(url.getPath().split("/")).filter(p -> !p.isBlank());
     }
@@ -109,122 +315,132 @@ public record GitHubMetadataRepositorySourceResolver(MetadataSourceResolver next
         return String.join("/", parts.subList(index, parts.size()));
     }
 
-    Details lookup(String username, String repository, ObjectMapper mapper, ReadableKeyedConfiguration configuration) {
+    Details lookup(String username, String repository, ReadableKeyedConfiguration configuration) {
         var logger = Logger.getLogger("whichlicense.sourcing.github");
         try {
-            var api = new URL("https://api.github.com/repos/%s/%s".formatted(username, repository));
-            var connection = (HttpURLConnection) api.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-            configuration.hasString("github.token", token ->
-                    connection.setRequestProperty("Authorization", "token " + token));
-            connection.setRequestProperty("User-Agent", "whichlicense");
-
+            var api = URI.create(REPOSITORY.formatted(GitHubEndpoints.api(configuration), username, repository));
             logger.finest("Checking if \"%s/%s\" exists".formatted(username, repository));
-
-            var code = connection.getResponseCode();
-            if (code == 401) throw new GitHubApiUnauthorizedException();
-            if (code == 403) throw new GitHubApiForbiddenException();
-            if (code != 200) return null;
-
-            return mapper.readValue(connection.getInputStream(), Details.class);
-        } catch (IOException exception) {
+            var response = GitHubHttpTransport.shared(configuration).api(api, configuration);
+            return response.statusCode() == 200 ? GitHubJson.DETAILS.readValue(response.content()) : null;
+        } catch (IOException | IllegalArgumentException exception) {
             logger.log(SEVERE, "Unable to verify the existence of \"%s/%s\" on github.com"
                     .formatted(username, repository), exception);
             return null;
         }
     }
 
-    String lookupShaForBranch(String branchesURL, String branch, ObjectMapper mapper, ReadableKeyedConfiguration configuration) {
+    String lookupShaForBranch(String branchesURL, String branch, ReadableKeyedConfiguration configuration) {
         var logger = Logger.getLogger("whichlicense.sourcing.github");
+        var refs = GitHubRefCache.shared(configuration);
+        var ref = branchesURL + "#" + branch;
+        if (refs.lookup(BRANCH, ref) instanceof Hit<?>(var sha)) return (String) sha;
         try {
-            var api = new URL(branchesURL.replaceFirst("\\{/branch}", "/" + branch));
-            var connection = (HttpURLConnection) api.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-            configuration.hasString("github.token", token ->
-                    connection.setRequestProperty("Authorization", "token " + token));
-            connection.setRequestProperty("User-Agent", "whichlicense");
-
-            var code = connection.getResponseCode();
-            if (code == 401) throw new GitHubApiUnauthorizedException();
-            if (code == 403) throw new GitHubApiForbiddenException();
-            if (code != 200) return null;
-            var node = mapper.readTree(connection.getInputStream());
+            var api = URI.create(branchesURL.replaceFirst("\\{/branch}", "/" + branch));
+            var response = GitHubHttpTransport.shared(configuration).api(api, configuration);
+            if (response.statusCode() == 404) refs.storeMissing(BRANCH, ref);
+            if (response.statusCode() != 200) return null;
+            Branch found = GitHubJson.BRANCH.readValue(response.content());
 
             logger.finest("Checking if branch \"%s\" exists".formatted(branch));
-            if (!Objects.equals(node.findValue("name")
-                    .asText(null), branch)) return null;
+            if (!Objects.equals(found.name(), branch)) {
+                refs.storeMissing(BRANCH, ref);
+                return null;
+            }
 
             logger.finest("Trying to find commit->sha for branch \"%s\"".formatted(branch));
-            return node.findPath("commit").findValue("sha").asText(null);
-        } catch (IOException exception) {
+            var sha = found.sha();
+            if (sha != null) refs.store(BRANCH, ref, sha);
+            return sha;
+        } catch (IOException | IllegalArgumentException exception) {
             logger.log(SEVERE, "Failed to lookup commit sha for branch \"%s\""
                     .formatted(branch), exception);
             return null;
         }
     }
 
-    String lookupShaForTag(String tagsURL, String tag, ObjectMapper mapper, ReadableKeyedConfiguration configuration) {
+    String lookupShaForTag(String tagsURL, String tag, ReadableKeyedConfiguration configuration) {
         var logger = Logger.getLogger("whichlicense.sourcing.github");
+        var refs = GitHubRefCache.shared(configuration);
+        var ref = tagsURL + "#" + tag;
+        if (refs.lookup(TAG, ref) instanceof Hit<?>(var sha)) return (String) sha;
         try {
-            var api = new URL(tagsURL.replaceFirst("\\{/tag}", "/" + tag));
-            var connection = (HttpURLConnection) api.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-            configuration.hasString("github.token", token ->
-                    connection.setRequestProperty("Authorization", "token " + token));
-            connection.setRequestProperty("User-Agent", "whichlicense");
-
-            var code = connection.getResponseCode();
-            if (code == 401) throw new GitHubApiUnauthorizedException();
-            if (code == 403) throw new GitHubApiForbiddenException();
-            if (code != 200) return null;
-            var node = mapper.readTree(connection.getInputStream());
+            var api = URI.create(tagsURL.replaceFirst("\\{/tag}", "/" + tag));
+            var response = GitHubHttpTransport.shared(configuration).api(api, configuration);
+            if (response.statusCode() == 404) refs.storeMissing(TAG, ref);
+            if (response.statusCode() != 200) return null;
+            GitRef found = GitHubJson.GIT_REF.readValue(response.content());
 
             logger.finest("Trying to find object->sha for tag \"%s\"".formatted(tag));
-            return node.findPath("object").findValue("sha").asText(null);
-        } catch (IOException exception) {
+            var sha = found.sha();
+            if (sha != null) refs.store(TAG, ref, sha);
+            return sha;
+        } catch (IOException | IllegalArgumentException exception) {
             logger.log(SEVERE, "Failed to lookup commit sha for tag \"%s\""
                     .formatted(tag), exception);
             return null;
         }
     }
 
-    Set<String> lookupTagsForSha(String tagsForShaURL, String sha, ObjectMapper mapper, ReadableKeyedConfiguration configuration) {
+    Set<String> lookupTagsForSha(String tagsForShaURL, String sha, ReadableKeyedConfiguration configuration) {
+        var refs = GitHubRefCache.shared(configuration);
+        if (refs.lookup(COMMIT, tagsForShaURL + "#" + sha) instanceof Hit<?>(Set<?> cached)) {
+            return cached.stream().map(String.class::cast).collect(Collectors.toCollection(HashSet::new));
+        }
+        var tags = new HashSet<String>();
+        if (lookupTags(tagsForShaURL, configuration, (target, tag) -> {
+            if (Objects.equals(target, sha)) tags.add(tag);
+        })) refs.store(COMMIT, tagsForShaURL + "#" + sha, Set.copyOf(tags));
+        return tags;
+    }
+
+    Map<String, Set<String>> lookupTagIndex(String tagsForShaURL, ReadableKeyedConfiguration configuration) {
+        var index = new HashMap<String, Set<String>>();
+        if (lookupTags(tagsForShaURL, configuration, (target, tag) ->
+                index.computeIfAbsent(target, ignored -> new HashSet<>()).add(tag))) {
+            var refs = GitHubRefCache.shared(configuration);
+            index.forEach((sha, tags) -> refs.store(COMMIT, tagsForShaURL + "#" + sha, Set.copyOf(tags)));
+        }
+        return index;
+    }
+
+    /**
+     * @return {@code true} if every tag was listed, which includes repositories without tags
+     */
+    private boolean lookupTags(String tagsForShaURL, ReadableKeyedConfiguration configuration,
+                               BiConsumer<String, String> sink) {
         try {
-            var api = new URL(tagsForShaURL);
-            var connection = (HttpURLConnection) api.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-            configuration.hasString("github.token", token ->
-                    connection.setRequestProperty("Authorization", "token " + token));
-            connection.setRequestProperty("User-Agent", "whichlicense");
-
-            var code = connection.getResponseCode();
-            if (code == 401) throw new GitHubApiUnauthorizedException();
-            if (code == 403) throw new GitHubApiForbiddenException();
-            if (code != 200) return Collections.emptySet();
-            var node = mapper.readTree(connection.getInputStream());
-
-            return StreamSupport.stream(node.spliterator(), true)
-                    .filter(n -> Objects.equals(n.findPath("object")
-                            .findValue("sha").asText(), sha))
-                    .map(n -> n.findValue("ref").asText()
-                            .replaceFirst("refs/tags/", ""))
-                    .filter(tag -> !Objects.equals(tag, "status"))
-                    .collect(Collectors.toSet());
-        } catch (IOException exception) {
-            return Collections.emptySet();
+            var transport = GitHubHttpTransport.shared(configuration);
+            var api = URI.create(tagsForShaURL + "?per_page=100");
+            while (api != null) {
+                var response = transport.api(api, configuration);
+                if (response.statusCode() == 404) return true;
+                if (response.statusCode() != 200) return false;
+                try (var parser = GitHubJson.MAPPER.createParser(response.content())) {
+                    collectTags(parser, sink);
+                }
+                api = response.next();
+            }
+            return true;
+        } catch (IOException | IllegalArgumentException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").finest("Failed to list tags of \"%s\": %s"
+                    .formatted(tagsForShaURL, exception));
+            return false;
+        }
+    }
+
+    void collectTags(JsonParser parser, BiConsumer<String, String> sink) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) return;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            GitRef ref = GitHubJson.GIT_REF.readValue(parser);
+            if (ref.ref() != null && ref.sha() != null) {
+                var tag = ref.ref().replaceFirst("refs/tags/", "");
+                if (!Objects.equals(tag, "status")) sink.accept(ref.sha(), tag);
+            }
         }
     }
 
-    String constructDownloadURL(String archiveURL, String sha) {
+    String constructDownloadURL(String archiveURL, String sha, ReadableKeyedConfiguration configuration) {
         return archiveURL.replaceFirst("\\{/ref}", "/" + sha)
-                .replaceFirst("\\{archive_format}", "zipball");
+                .replaceFirst("\\{archive_format}", ArchiveFormat.of(configuration).path());
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import java.time.Duration;
+
+/**
+ * Receives measurements of the GitHub sourcing hot path. An implementation bridging to a
+ * metrics registry such as Micrometer is picked up through the {@link java.util.ServiceLoader}
+ * or installed with {@link GitHubMetadataRepositorySourceResolver#metrics(GitHubMetrics)}.
+ * Every method defaults to doing nothing, which is also the behaviour of {@link #NOOP}.
+ */
+public interface GitHubMetrics {
+    GitHubMetrics NOOP = new GitHubMetrics() {
+    };
+
+    /**
+     * @param endpoint the endpoint class, like {@code repository}, {@code branch} or {@code zipball}
+     * @param status   the HTTP status code, or {@code -1} if no response was received
+     * @param bytes    the number of response body bytes read
+     */
+    default void request(String endpoint, int status, long bytes, Duration latency) {
+    }
+
+    /**
+     * @param resource the rate limit resource, like {@code core} or {@code graphql}
+     */
+    default void rateLimit(String credential, String resource, int limit, int remaining) {
+    }
+
+    /**
+     * @param cache one of {@code api}, {@code etag}, {@code refs} or {@code archive}
+     */
+    default void cache(String cache, boolean hit) {
+    }
+
+    /**
+     * @param bytes      the archive size, or {@code -1} if the archive was never stored as a whole
+     * @param extraction the part of the duration spent extracting, zero if it overlaps the download
+     */
+    default void archive(String mode, long bytes, Duration duration, Duration extraction) {
+    }
+
+    /**
+     * Called when a duplicate of a slow idempotent request is sent.
+     */
+    default void hedge(String endpoint) {
+    }
+
+    /**
+     * @param target the host, suffixed with {@code /archive} for archive downloads
+     */
+    default void circuit(String target, boolean open) {
+    }
+}
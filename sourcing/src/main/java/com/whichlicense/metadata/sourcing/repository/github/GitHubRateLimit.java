@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The budget of a credential for one rate limit resource, like {@code core} or {@code graphql}.
+ */
+public record GitHubRateLimit(String credential, String resource, int limit, int remaining, Instant reset) {
+    public GitHubRateLimit {
+        Objects.requireNonNull(credential);
+        Objects.requireNonNull(resource);
+        Objects.requireNonNull(reset);
+    }
+}
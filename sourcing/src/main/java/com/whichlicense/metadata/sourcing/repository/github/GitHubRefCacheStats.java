@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+public record GitHubRefCacheStats(long hits, long negativeHits, long misses, long evictions, long size) {
+    public double hitRatio() {
+        var lookups = hits + negativeHits + misses;
+        return lookups == 0 ? 0 : (double) (hits + negativeHits) / lookups;
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github;
+
+import com.whichlicense.metadata.sourcing.MetadataSource;
+
+import java.net.URL;
+import java.util.Objects;
+
+public record GitHubResolution(URL url, MetadataSource source, RuntimeException failure) {
+    public GitHubResolution {
+        Objects.requireNonNull(url);
+    }
+
+    public boolean resolved() {
+        return source != null;
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit of its target is open.
+ */
+public class GitHubCircuitOpenException extends IOException {
+    public GitHubCircuitOpenException(String target) {
+        super("Circuit open for " + target);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Creates the files of extracted archive entries. A deduplicating archive cache provides one
+ * that hashes the contents while they stream in and links contents it already holds instead
+ * of writing them again, see {@link GithubArchiveCache#writer()}.
+ */
+@FunctionalInterface
+public interface ArchiveEntryWriter {
+    ArchiveEntryWriter FILES = Files::newOutputStream;
+
+    /**
+     * @return a stream creating the file at {@code destination} once it is closed at the latest
+     */
+    OutputStream open(Path destination) throws IOException;
+
+    default void write(Path destination, byte[] content) throws IOException {
+        try (var output = open(destination)) {
+            output.write(content);
+        }
+    }
+}
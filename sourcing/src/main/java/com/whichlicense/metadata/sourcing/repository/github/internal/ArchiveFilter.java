@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Include filter for archive entries. Patterns containing a {@code /} are matched as globs
+ * against the path relative to the archive root, all other patterns against the file name
+ * at any depth.
+ */
+public record ArchiveFilter(List<String> patterns, List<PathMatcher> pathMatchers, List<PathMatcher> nameMatchers) {
+    public ArchiveFilter {
+        Objects.requireNonNull(patterns);
+        Objects.requireNonNull(pathMatchers);
+        Objects.requireNonNull(nameMatchers);
+    }
+
+    public static ArchiveFilter of(List<String> patterns) {
+        var fileSystem = FileSystems.getDefault();
+        return new ArchiveFilter(List.copyOf(patterns),
+                patterns.stream().filter(pattern -> pattern.contains("/"))
+                        .map(pattern -> fileSystem.getPathMatcher("glob:" + pattern)).toList(),
+                patterns.stream().filter(pattern -> !pattern.contains("/"))
+                        .map(pattern -> fileSystem.getPathMatcher("glob:" + pattern)).toList());
+    }
+
+    public static ArchiveFilter of(ReadableKeyedConfiguration configuration) {
+        var patterns = new String[1];
+        configuration.hasString("github.archive.include", value -> patterns[0] = value);
+        if (patterns[0] == null || patterns[0].isBlank()) return null;
+        return of(Stream.of(patterns[0].split(",")).map(String::strip).filter(pattern -> !pattern.isEmpty()).toList());
+    }
+
+    public boolean includes(String relativePath) {
+        var path = Path.of(relativePath);
+        var name = path.getFileName();
+        return pathMatchers.stream().anyMatch(matcher -> matcher.matches(path))
+                || name != null && nameMatchers.stream().anyMatch(matcher -> matcher.matches(name));
+    }
+
+    /**
+     * @return the SHA-256 of the patterns, identifying the filter in cache keys
+     */
+    public String fingerprint() {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var pattern : patterns) digest.update((pattern + '\0').getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.util.Locale;
+
+/**
+ * The {@code archive_format} requested from GitHub. The zip file system mode always
+ * requires a zipball.
+ */
+public enum ArchiveFormat {
+    ZIPBALL, TARBALL;
+
+    public static ArchiveFormat of(ReadableKeyedConfiguration configuration) {
+        var format = new ArchiveFormat[]{ZIPBALL};
+        configuration.hasString("github.archive.format", value ->
+                format[0] = valueOf(value.strip().toUpperCase(Locale.ROOT)));
+        return ArchiveMode.of(configuration) == ArchiveMode.ZIPFS ? ZIPBALL : format[0];
+    }
+
+    public String path() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
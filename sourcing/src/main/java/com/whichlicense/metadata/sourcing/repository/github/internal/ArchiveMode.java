@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.util.Locale;
+
+public enum ArchiveMode {
+    STAGED, STREAMING, SPARSE, ZIPFS;
+
+    public static ArchiveMode of(ReadableKeyedConfiguration configuration) {
+        var mode = new ArchiveMode[]{STAGED};
+        configuration.hasString("github.archive.mode", value ->
+                mode[0] = valueOf(value.strip().toUpperCase(Locale.ROOT)));
+        return mode[0];
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+public record Branch(String name, Commit commit) {
+    public String sha() {
+        return commit == null ? null : commit.sha();
+    }
+
+    public record Commit(String sha) {
+    }
+}
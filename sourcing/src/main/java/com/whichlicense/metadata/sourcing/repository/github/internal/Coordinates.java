@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.util.Objects;
+
+public record Coordinates(String username, String repository) {
+    public Coordinates {
+        Objects.requireNonNull(username);
+        Objects.requireNonNull(repository);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public record GitHubApiResponse(int statusCode, HttpHeaders headers, byte[] content) {
+    private static final Pattern NEXT = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"next\"");
+
+    public GitHubApiResponse {
+        Objects.requireNonNull(headers);
+        Objects.requireNonNull(content);
+    }
+
+    public InputStream body() {
+        return new ByteArrayInputStream(content);
+    }
+
+    public URI next() {
+        return headers.firstValue("Link").map(NEXT::matcher)
+                .filter(Matcher::find).map(matcher -> URI.create(matcher.group(1))).orElse(null);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("whichlicense.github.Archive")
+@Label("GitHub Archive")
+@Category({"WhichLicense", "GitHub"})
+@Description("Download and extraction of the archive of a commit")
+@StackTrace(false)
+class GitHubArchiveEvent extends jdk.jfr.Event {
+    @Label("Repository")
+    String repository;
+    @Label("Commit")
+    String sha;
+    @Label("Mode")
+    String mode;
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    @Label("Extraction")
+    @Timespan
+    long extraction;
+}
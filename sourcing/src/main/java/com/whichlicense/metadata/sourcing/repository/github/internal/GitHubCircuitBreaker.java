@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubCircuitOpenException;
+
+import java.time.Duration;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Fails requests against a degraded target fast. After {@code threshold} consecutive failures,
+ * meaning I/O errors and 5xx responses, the circuit opens for {@code open}. The first request
+ * after that probes the target alone, closing the circuit on success and reopening it on failure.
+ */
+final class GitHubCircuitBreaker {
+    private final String target;
+    private final int threshold;
+    private final Duration open;
+    private int failures;
+    private long openUntil;
+    private boolean probing;
+
+    GitHubCircuitBreaker(String target, int threshold, Duration open) {
+        this.target = target;
+        this.threshold = threshold;
+        this.open = open;
+    }
+
+    /**
+     * @return whether the caller probes the target, which it passes back to {@link #record}
+     */
+    synchronized boolean acquire() throws GitHubCircuitOpenException {
+        if (threshold <= 0 || failures < threshold) return false;
+        if (probing || System.nanoTime() - openUntil < 0) throw new GitHubCircuitOpenException(target);
+        probing = true;
+        return true;
+    }
+
+    /**
+     * @param probe   what {@link #acquire} returned for the request; only the probe ends probing,
+     *                requests still in flight from before the circuit opened do not
+     * @param healthy the outcome of the request, {@code null} if it was abandoned without one
+     */
+    synchronized void record(boolean probe, Boolean healthy) {
+        var wasOpen = threshold > 0 && failures >= threshold;
+        if (probe) probing = false;
+        if (healthy == null) return;
+        if (healthy) {
+            failures = 0;
+            if (wasOpen) {
+                Logger.getLogger("whichlicense.sourcing.github").info("Circuit for %s closed".formatted(target));
+                GitHubTelemetry.metrics().circuit(target, false);
+            }
+            return;
+        }
+        failures = Math.min(failures + 1, Integer.MAX_VALUE - 1);
+        if (threshold <= 0 || failures < threshold) return;
+        openUntil = System.nanoTime() + open.toNanos();
+        if (!wasOpen) {
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Circuit for %s opened after %d failures"
+                    .formatted(target, failures));
+            GitHubTelemetry.metrics().circuit(target, true);
+        }
+    }
+
+    synchronized boolean closed() {
+        return threshold <= 0 || failures < threshold;
+    }
+}
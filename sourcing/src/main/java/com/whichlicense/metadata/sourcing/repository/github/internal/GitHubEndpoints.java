@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+/**
+ * Base URLs of the GitHub services, configurable to target GitHub Enterprise Server or a
+ * local stand-in. Archive downloads follow the {@code archive_url} returned by the API.
+ */
+public final class GitHubEndpoints {
+    private GitHubEndpoints() {
+    }
+
+    public static String api(ReadableKeyedConfiguration configuration) {
+        return base(configuration, "github.api.url", "https://api.github.com");
+    }
+
+    public static String raw(ReadableKeyedConfiguration configuration) {
+        return base(configuration, "github.raw.url", "https://raw.githubusercontent.com");
+    }
+
+    private static String base(ReadableKeyedConfiguration configuration, String key, String fallback) {
+        var url = new String[]{fallback};
+        configuration.hasString(key, value -> {
+            if (!value.isBlank()) url[0] = value.strip();
+        });
+        return url[0].endsWith("/") ? url[0].substring(0, url[0].length() - 1) : url[0];
+    }
+}
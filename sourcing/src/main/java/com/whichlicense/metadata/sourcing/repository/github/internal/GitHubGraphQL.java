@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Resolves the default branch, its head commit and the tags pointing at that commit for
+ * many repositories at once, using one aliased GraphQL query per {@value #BATCH_SIZE}
+ * repositories. Only the first page of tags is queried; the tags of a repository with more
+ * tags than that are left to the paginating REST lookup.
+ */
+public final class GitHubGraphQL {
+    public static final int BATCH_SIZE = 50;
+    private static final String ENDPOINT = "%s/graphql";
+    private static final String ARCHIVE_URL = "%s/repos/%s/%s/{archive_format}{/ref}";
+    // Tags are ordered by the date of the commit they point at, so the tags of the
+    // default branch head usually come first, but a page can still miss some of them.
+    private static final String FRAGMENT = """
+            fragment head on Repository {
+              defaultBranchRef { name target { oid } }
+              refs(refPrefix: "refs/tags/", first: 100, orderBy: {field: TAG_COMMIT_DATE, direction: DESC}) {
+                nodes { name target { oid } }
+                pageInfo { hasNextPage }
+              }
+            }
+            """;
+
+    private GitHubGraphQL() {
+    }
+
+    public static boolean enabled(ReadableKeyedConfiguration configuration) {
+        var mode = new String[]{"rest"};
+        configuration.hasString("github.resolution.mode", value -> mode[0] = value);
+        return mode[0].equalsIgnoreCase("graphql") && GitHubHttpTransport.shared(configuration).authenticated(configuration);
+    }
+
+    public static Map<Coordinates, Head> lookupHeads(Collection<Coordinates> repositories, ReadableKeyedConfiguration configuration) {
+        var heads = new HashMap<Coordinates, Head>();
+        var pending = List.copyOf(new LinkedHashSet<>(repositories));
+        for (var from = 0; from < pending.size(); from += BATCH_SIZE) {
+            var batch = pending.subList(from, Math.min(from + BATCH_SIZE, pending.size()));
+            try {
+                heads.putAll(lookupBatch(batch, configuration));
+            } catch (IOException exception) {
+                Logger.getLogger("whichlicense.sourcing.github").log(SEVERE,
+                        "Unable to resolve %d repositories through the GitHub GraphQL API".formatted(batch.size()), exception);
+            }
+        }
+        return heads;
+    }
+
+    private static Map<Coordinates, Head> lookupBatch(List<Coordinates> batch, ReadableKeyedConfiguration configuration) throws IOException {
+        var body = GitHubJson.MAPPER.writeValueAsBytes(request(batch));
+        var response = GitHubHttpTransport.shared(configuration).post(URI.create(ENDPOINT.formatted(GitHubEndpoints.api(configuration))), body, configuration);
+        if (response.statusCode() != 200) return Map.of();
+        return parse(batch, response.content());
+    }
+
+    /**
+     * @return the query aliasing every repository of the batch as {@code r<index>} with its
+     * own {@code o<index>} and {@code n<index>} variables, and the values of those variables
+     */
+    static Map<String, Object> request(List<Coordinates> batch) {
+        var query = new StringBuilder("query(");
+        var variables = new HashMap<String, String>();
+        for (var i = 0; i < batch.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append("$o%d: String!, $n%d: String!".formatted(i, i));
+            variables.put("o" + i, batch.get(i).username());
+            variables.put("n" + i, batch.get(i).repository());
+        }
+        query.append(") {\n");
+        for (var i = 0; i < batch.size(); i++) {
+            query.append("  r%d: repository(owner: $o%d, name: $n%d) { ...head }\n".formatted(i, i, i));
+        }
+        query.append("}\n").append(FRAGMENT);
+        return Map.of("query", query.toString(), "variables", variables);
+    }
+
+    /**
+     * Repositories GitHub reports as missing, or that have no default branch, are left out;
+     * they resolve through the REST API instead.
+     */
+    static Map<Coordinates, Head> parse(List<Coordinates> batch, byte[] content) throws IOException {
+        var root = GitHubJson.MAPPER.readTree(content);
+        if (root.path("errors").isArray() && !root.path("errors").isEmpty()) {
+            var messages = new ArrayList<String>();
+            root.path("errors").forEach(error -> messages.add(error.path("message").asText()));
+            Logger.getLogger("whichlicense.sourcing.github").fine("GitHub GraphQL API reported errors: " + messages);
+        }
+        var data = root.path("data");
+        var heads = new HashMap<Coordinates, Head>();
+        for (var i = 0; i < batch.size(); i++) {
+            var branch = data.path("r" + i).path("defaultBranchRef");
+            var sha = branch.path("target").path("oid").asText(null);
+            if (branch.isMissingNode() || branch.isNull() || sha == null) continue;
+            var refs = data.path("r" + i).path("refs");
+            if (refs.path("pageInfo").path("hasNextPage").asBoolean()) {
+                heads.put(batch.get(i), new Head(branch.path("name").asText(), sha, null));
+                continue;
+            }
+            var tags = new HashSet<String>();
+            for (var ref : refs.path("nodes")) {
+                if (Objects.equals(ref.path("target").path("oid").asText(null), sha)) tags.add(ref.path("name").asText());
+            }
+            tags.remove("status");
+            heads.put(batch.get(i), new Head(branch.path("name").asText(), sha, Set.copyOf(tags)));
+        }
+        return heads;
+    }
+
+    public static String archiveURL(Coordinates repository, ReadableKeyedConfiguration configuration) {
+        return ARCHIVE_URL.formatted(GitHubEndpoints.api(configuration), repository.username(), repository.repository());
+    }
+
+    /**
+     * @param tags the tags pointing at the head, {@code null} if the repository has more tags
+     *             than the query covered
+     */
+    public record Head(String defaultBranch, String sha, Set<String> tags) {
+        public Head {
+            Objects.requireNonNull(defaultBranch);
+            Objects.requireNonNull(sha);
+        }
+    }
+}
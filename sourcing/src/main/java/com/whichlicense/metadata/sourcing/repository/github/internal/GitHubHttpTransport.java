@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiForbiddenException;
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiUnauthorizedException;
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubCircuitOpenException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Shared HTTP/2 transport for all calls against the GitHub API and codeload. One
+ * {@link HttpClient} exists per distinct set of transport settings, so requests made
+ * with the same configuration reuse and multiplex the same connections.
+ * <p>
+ * Tail latency is bounded by per-endpoint timeouts ({@code github.http.timeout.<endpoint>})
+ * and by hedging API calls: once a response takes longer than the 95th percentile of its
+ * endpoint, a duplicate request is sent and the first response wins. A circuit breaker per host,
+ * separate for archive downloads, fails requests fast while the host keeps failing. The
+ * timeouts only cover the time until the response headers arrive; a body that stops
+ * receiving data for {@code github.http.idle-timeout} fails the read and cancels the exchange.
+ * <p>
+ * Only requests against {@code github.api.url} go through the {@link GitHubRateLimiter};
+ * raw file and codeload downloads are bounded by the connection permits alone.
+ */
+public final class GitHubHttpTransport {
+    public static final String API_JSON = "application/vnd.github.v3+json";
+    private static final Map<Settings, GitHubHttpTransport> SHARED = new ConcurrentHashMap<>();
+    private static final ExecutorService HEDGES = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int HEDGE_SAMPLES = 20;
+    private final HttpClient client;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final SingleFlight<List<Object>, GitHubApiResponse> flights = new SingleFlight<>();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Map<String, GitHubCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private GitHubHttpTransport(Settings settings) {
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxConnections(), true);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(settings.connectTimeout())
+                .build();
+    }
+
+    public static GitHubHttpTransport shared(ReadableKeyedConfiguration configuration) {
+        return SHARED.computeIfAbsent(Settings.of(configuration), GitHubHttpTransport::new);
+    }
+
+    /**
+     * Concurrent calls for the same URI and credentials share a single request and its response.
+     */
+    public GitHubApiResponse api(URI uri, ReadableKeyedConfiguration configuration) throws IOException {
+        return flights.execute(List.of(uri, tokens(configuration)), () -> fetch(uri, configuration));
+    }
+
+    /**
+     * Serves a fresh response cached for any token of the pool, otherwise revalidates the entry
+     * of whichever token the request ends up being sent with.
+     */
+    private GitHubApiResponse fetch(URI uri, ReadableKeyedConfiguration configuration) throws IOException {
+        var cache = GitHubResponseCache.shared(configuration);
+        var tokens = tokens(configuration);
+        var entries = new HashMap<String, GitHubResponseCache.Entry>();
+        for (var token : tokens.isEmpty() ? Collections.<String>singletonList(null) : tokens) {
+            var credential = GitHubResponseCache.credential(token);
+            if (cache.lookup(uri, credential) instanceof GitHubResponseCache.Entry entry) entries.put(credential, entry);
+        }
+        var metrics = GitHubTelemetry.metrics();
+        var fresh = entries.values().stream().filter(cache::isFresh).findFirst();
+        metrics.cache("api", fresh.isPresent());
+        if (fresh.isPresent()) return fresh.get().response();
+        return exchange(request(uri, API_JSON).GET(), tokens, configuration, true, token ->
+                entries.get(GitHubResponseCache.credential(token)) instanceof GitHubResponseCache.Entry entry
+                        ? entry.etag() : null, (token, response) -> {
+            var credential = GitHubResponseCache.credential(token);
+            var cached = entries.get(credential);
+            if (cached != null) metrics.cache("etag", response.statusCode() == 304);
+            if (response.statusCode() == 304 && cached != null) {
+                cache.store(uri, credential, cached.revalidated());
+                return cached.response();
+            }
+            var result = new GitHubApiResponse(response.statusCode(), response.headers(), response.body().readAllBytes());
+            if (result.statusCode() == 200) response.headers().firstValue("ETag").ifPresent(etag -> cache.store(uri, credential,
+                    new GitHubResponseCache.Entry(etag, response.headers().firstValue("Link").orElse(null),
+                            result.content(), Instant.now())));
+            return result;
+        });
+    }
+
+    public <T> T get(URI uri, String accept, ReadableKeyedConfiguration configuration, ResponseHandler<T> handler) throws IOException {
+        return get(uri, accept, Map.of(), configuration, handler);
+    }
+
+    public GitHubApiResponse post(URI uri, byte[] body, ReadableKeyedConfiguration configuration) throws IOException {
+        var request = request(uri, API_JSON).POST(BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/json");
+        return exchange(request, tokens(configuration), configuration, false, response ->
+                new GitHubApiResponse(response.statusCode(), response.headers(), response.body().readAllBytes()));
+    }
+
+    public boolean authenticated(ReadableKeyedConfiguration configuration) {
+        return !tokens(configuration).isEmpty();
+    }
+
+    public <T> T get(URI uri, String accept, Map<String, String> headers, ReadableKeyedConfiguration configuration,
+                     ResponseHandler<T> handler) throws IOException {
+        var request = request(uri, accept).GET();
+        headers.forEach(request::header);
+        return exchange(request, tokens(configuration), configuration, false, handler);
+    }
+
+    private HttpRequest.Builder request(URI uri, String accept) {
+        var request = HttpRequest.newBuilder(uri)
+                .timeout(settings.timeouts().getOrDefault(GitHubTelemetry.endpoint(uri), settings.readTimeout()))
+                .header("X-GitHub-Api-Version", "2022-11-28")
+                .header("User-Agent", "whichlicense");
+        if (accept != null) request.header("Accept", accept);
+        return request;
+    }
+
+    private <T> T exchange(HttpRequest.Builder builder, List<String> tokens, ReadableKeyedConfiguration configuration,
+                           boolean hedge, ResponseHandler<T> handler) throws IOException {
+        return exchange(builder, tokens, configuration, hedge, token -> null, (token, response) -> handler.handle(response));
+    }
+
+    /**
+     * @param hedge whether the request is idempotent and may be hedged
+     * @param etags the {@code ETag} to revalidate for the token a request is sent with, if any
+     */
+    private <T> T exchange(HttpRequest.Builder builder, List<String> tokens, ReadableKeyedConfiguration configuration,
+                           boolean hedge, Function<String, String> etags, TokenResponseHandler<T> handler) throws IOException {
+        var resource = GitHubRateLimiter.resource(builder.build().uri(), configuration);
+        for (var attempt = 0; ; attempt++) {
+            var token = resource != null ? GitHubRateLimiter.select(tokens, resource) : tokens.isEmpty() ? null : tokens.get(0);
+            var attempted = builder.copy();
+            if (token != null) attempted.setHeader("Authorization", "token " + token);
+            var etag = etags.apply(token);
+            if (etag != null) attempted.setHeader("If-None-Match", etag);
+            var request = attempted.build();
+            var event = new GitHubRequestEvent();
+            var observed = GitHubTelemetry.observed(event);
+            var transferred = observed ? new LongAdder() : null;
+            var status = -1;
+            var remaining = -1;
+            var endpoint = GitHubTelemetry.endpoint(request.uri());
+            var breaker = breaker(request.uri(), endpoint);
+            Boolean healthy = null;
+            boolean probe;
+            if (resource != null) GitHubRateLimiter.acquire(token, resource, configuration);
+            try {
+                permits.acquire();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a connection to " + request.uri());
+            }
+            try {
+                // taken last, so a half-open probe is always followed by the finally recording its outcome
+                probe = breaker.acquire();
+            } catch (GitHubCircuitOpenException exception) {
+                permits.release();
+                throw exception;
+            }
+            var started = observed ? System.nanoTime() : 0;
+            event.begin();
+            try {
+                var response = hedge ? hedged(request, token, resource, breaker, configuration, body(transferred))
+                        : client.send(request, body(transferred));
+                try (var body = response.body()) {
+                    if (resource != null) GitHubRateLimiter.update(token, resource, response.headers());
+                    var code = status = response.statusCode();
+                    healthy = code < 500;
+                    remaining = (int) GitHubRateLimiter.header(response.headers(), "X-RateLimit-Remaining").orElse(-1);
+                    if (code == 401) throw new GitHubApiUnauthorizedException();
+                    if (code == 403 || code == 429) {
+                        var message = new String(body.readNBytes(4096), StandardCharsets.UTF_8);
+                        if (resource != null && GitHubRateLimiter.retry(tokens, token, resource, code, response.headers(),
+                                message, attempt, configuration)) continue;
+                        throw new GitHubApiForbiddenException();
+                    }
+                    return handler.handle(token, response);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+            } catch (IOException exception) {
+                var abandoned = exception instanceof InterruptedIOException || Thread.currentThread().isInterrupted();
+                if (healthy == null && !abandoned) healthy = false;
+                throw exception;
+            } finally {
+                breaker.record(probe, healthy);
+                permits.release();
+                if (observed) GitHubTelemetry.request(event, request.uri(), status, transferred.sum(), remaining, started);
+            }
+        }
+    }
+
+    /**
+     * Sends an idempotent request and, if its headers have not arrived after the 95th percentile
+     * latency of its endpoint, a duplicate of it. The first successful response wins and the
+     * other attempt is cancelled. Only the network exchange is timed and raced, the rate limit
+     * pacing and retries around it are not. Requests are not hedged before the endpoint has
+     * enough samples, while the circuit of the host is not closed or while the rate limiter
+     * paces or blocks the credential, since a duplicate costs quota as well.
+     */
+    private HttpResponse<InputStream> hedged(HttpRequest request, String token, String resource, GitHubCircuitBreaker breaker,
+                                             ReadableKeyedConfiguration configuration, BodyHandler<InputStream> handler)
+            throws IOException, InterruptedException {
+        var endpoint = GitHubTelemetry.endpoint(request.uri());
+        var window = latency(endpoint);
+        Callable<HttpResponse<InputStream>> call = () -> timed(request, handler, window);
+        var constrained = resource != null && GitHubRateLimiter.constrained(token, resource, configuration);
+        var delay = settings.hedge() && !constrained && breaker.closed() ? window.percentile(0.95, HEDGE_SAMPLES) : -1;
+        if (delay < 0) return timed(request, handler, window);
+        var completion = new ExecutorCompletionService<HttpResponse<InputStream>>(HEDGES);
+        var attempts = new ArrayList<Future<HttpResponse<InputStream>>>(2);
+        attempts.add(completion.submit(call));
+        Future<HttpResponse<InputStream>> winner = null;
+        try {
+            var first = completion.poll(Math.max(delay, settings.hedgeMinDelay().toNanos()), NANOSECONDS);
+            if (first == null) {
+                GitHubTelemetry.metrics().hedge(endpoint);
+                if (resource != null) GitHubRateLimiter.consume(token, resource);
+                attempts.add(completion.submit(call));
+                first = completion.take();
+            }
+            try {
+                var response = first.get();
+                winner = first;
+                return response;
+            } catch (ExecutionException failure) {
+                if (attempts.size() == 1) throw failure;
+                winner = completion.take();
+                return winner.get();
+            }
+        } catch (ExecutionException failure) {
+            if (failure.getCause() instanceof IOException cause) throw cause;
+            if (failure.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException(failure.getCause());
+        } finally {
+            for (var attempt : attempts) {
+                if (attempt == winner) continue;
+                attempt.cancel(true);
+                if (attempt.state() == Future.State.SUCCESS) attempt.resultNow().body().close();
+            }
+        }
+    }
+
+    private HttpResponse<InputStream> timed(HttpRequest request, BodyHandler<InputStream> handler, LatencyWindow window)
+            throws IOException, InterruptedException {
+        var started = System.nanoTime();
+        var response = client.send(request, handler);
+        window.record(System.nanoTime() - started);
+        return response;
+    }
+
+    private LatencyWindow latency(String endpoint) {
+        return latencies.computeIfAbsent(endpoint, ignored -> new LatencyWindow(256));
+    }
+
+    private GitHubCircuitBreaker breaker(URI uri, String endpoint) {
+        var archive = endpoint.equals("zipball") || endpoint.equals("tarball") || endpoint.equals("archive");
+        var target = archive ? uri.getHost() + "/archive" : uri.getHost();
+        return breakers.computeIfAbsent(target, ignored ->
+                new GitHubCircuitBreaker(target, settings.breakerFailures(), settings.breakerOpen()));
+    }
+
+    private BodyHandler<InputStream> body(LongAdder transferred) {
+        var idle = settings.idleTimeout().toNanos();
+        if (transferred == null) return info -> new IdleTimeoutSubscriber(idle);
+        return info -> BodySubscribers.mapping(new IdleTimeoutSubscriber(idle), body -> new FilterInputStream(body) {
+            @Override
+            public int read() throws IOException {
+                var read = super.read();
+                if (read >= 0) transferred.increment();
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                var read = super.read(buffer, offset, length);
+                if (read > 0) transferred.add(read);
+                return read;
+            }
+        });
+    }
+
+    private static List<String> tokens(ReadableKeyedConfiguration configuration) {
+        var tokens = new LinkedHashSet<String>();
+        configuration.hasString("github.token", tokens::add);
+        configuration.hasString("github.tokens", value -> Stream.of(value.split(","))
+                .map(String::strip).filter(token -> !token.isEmpty()).forEach(tokens::add));
+        return List.copyOf(tokens);
+    }
+
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(HttpResponse<InputStream> response) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface TokenResponseHandler<T> {
+        T handle(String token, HttpResponse<InputStream> response) throws IOException;
+    }
+
+    record Settings(Duration connectTimeout, Duration readTimeout, Duration idleTimeout, int maxConnections,
+                    Map<String, Duration> timeouts, boolean hedge, Duration hedgeMinDelay, int breakerFailures, Duration breakerOpen) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var connectTimeout = new long[]{10_000};
+            var readTimeout = new long[]{60_000};
+            var idleTimeout = new long[]{30_000};
+            var maxConnections = new int[]{64};
+            var timeouts = new HashMap<String, Duration>();
+            var hedge = new boolean[]{true};
+            var hedgeMinDelay = new long[]{50};
+            var breakerFailures = new int[]{5};
+            var breakerOpen = new long[]{30_000};
+            configuration.hasLong("github.http.connect-timeout", value -> connectTimeout[0] = value);
+            configuration.hasLong("github.http.read-timeout", value -> readTimeout[0] = value);
+            configuration.hasLong("github.http.idle-timeout", value -> idleTimeout[0] = value);
+            configuration.hasInteger("github.http.max-connections", value -> maxConnections[0] = value);
+            for (var endpoint : GitHubTelemetry.ENDPOINTS) configuration.hasLong("github.http.timeout." + endpoint,
+                    value -> timeouts.put(endpoint, Duration.ofMillis(value)));
+            configuration.hasBoolean("github.http.hedge", value -> hedge[0] = value);
+            configuration.hasLong("github.http.hedge.min-delay", value -> hedgeMinDelay[0] = value);
+            configuration.hasInteger("github.http.breaker.failures", value -> breakerFailures[0] = value);
+            configuration.hasLong("github.http.breaker.open", value -> breakerOpen[0] = value);
+            return new Settings(Duration.ofMillis(connectTimeout[0]), Duration.ofMillis(readTimeout[0]),
+                    Duration.ofMillis(idleTimeout[0]), Math.max(1, maxConnections[0]), Map.copyOf(timeouts), hedge[0], Duration.ofMillis(hedgeMinDelay[0]),
+                    breakerFailures[0], Duration.ofMillis(breakerOpen[0]));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * The single mapper of the module and the readers binding GitHub responses into records.
+ * Both are immutable and thread-safe, unknown fields are skipped.
+ */
+public final class GitHubJson {
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    public static final ObjectReader DETAILS = MAPPER.readerFor(Details.class);
+    public static final ObjectReader BRANCH = MAPPER.readerFor(Branch.class);
+    public static final ObjectReader GIT_REF = MAPPER.readerFor(GitRef.class);
+    public static final ObjectReader TREE = MAPPER.readerFor(Tree.class);
+
+    private GitHubJson() {
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.lang.ProcessBuilder.Redirect.DISCARD;
+
+/**
+ * A bare git mirror of a repository on the local host, enabled by pointing
+ * {@code github.mirror.directory} at a directory holding mirrors as {@code owner/repository.git}
+ * or {@code owner/repository}. Refs are resolved and trees exported through the git executable
+ * ({@code github.mirror.git}), so a mirrored repository needs neither the API nor codeload.
+ * Every lookup answers {@code null} on a miss, leaving the resolution to the API.
+ */
+public final class GitHubMirror {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final Pattern SHA = Pattern.compile("[0-9a-fA-F]{4,40}");
+    private final String username;
+    private final String repository;
+    private final Path directory;
+    private final Settings settings;
+
+    GitHubMirror(String username, String repository, Path directory, Settings settings) {
+        this.username = username;
+        this.repository = repository;
+        this.directory = directory;
+        this.settings = settings;
+    }
+
+    public static GitHubMirror of(String username, String repository, ReadableKeyedConfiguration configuration) {
+        var settings = Settings.of(configuration);
+        if (settings == null || !isName(username) || !isName(repository)) return null;
+        for (var candidate : List.of(repository + ".git", repository)) {
+            var directory = settings.directory().resolve(username).resolve(candidate);
+            if (Files.isRegularFile(directory.resolve("HEAD")) && Files.isDirectory(directory.resolve("objects"))) {
+                return new GitHubMirror(username, repository, directory, settings);
+            }
+        }
+        return null;
+    }
+
+    public String defaultBranch() {
+        return git("symbolic-ref", "--quiet", "--short", "HEAD");
+    }
+
+    public String shaForBranch(String branch) {
+        return git("rev-parse", "--verify", "--quiet", "refs/heads/" + branch + "^{commit}");
+    }
+
+    /**
+     * @return the commit the tag points at, peeling annotated tags
+     */
+    public String shaForTag(String tag) {
+        return git("rev-parse", "--verify", "--quiet", "refs/tags/" + tag + "^{commit}");
+    }
+
+    /**
+     * @return the full sha of the commit, or {@code null} if the mirror does not contain it
+     */
+    public String commit(String sha) {
+        if (!SHA.matcher(sha).matches()) return null;
+        return git("rev-parse", "--verify", "--quiet", sha + "^{commit}");
+    }
+
+    public Set<String> tagsForSha(String sha) {
+        var tags = SHA.matcher(sha).matches() ? git("tag", "--points-at", sha) : null;
+        if (tags == null || tags.isEmpty()) return Set.of();
+        return tags.lines().filter(tag -> !tag.isBlank()).collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Exports the tree of the commit below {@code target} through {@code git archive}, laid out
+     * like a GitHub zipball with a single {@code owner-repository-sha7} root directory.
+     *
+     * @return the root directory, or {@code null} if the export failed
+     */
+    public Path export(String sha, Path target, ArchiveFilter filter) throws IOException {
+        return export(sha, target, filter, ArchiveEntryWriter.FILES);
+    }
+
+    public Path export(String sha, Path target, ArchiveFilter filter, ArchiveEntryWriter writer) throws IOException {
+        if (!SHA.matcher(sha).matches()) return null;
+        var prefix = "%s-%s-%s/".formatted(username, repository, sha.substring(0, Math.min(7, sha.length())));
+        var process = start("archive", "--format=zip", "--prefix=" + prefix, sha);
+        var root = await(process, () -> {
+            try (var output = process.getInputStream()) {
+                return GithubZipStreamExtractor.extract(output, target, filter, writer);
+            }
+        });
+        if (root == null) return null;
+        Logger.getLogger("whichlicense.sourcing.archive")
+                .finest("Exported %s/%s@%s from the mirror at %s".formatted(username, repository, sha, directory));
+        return root;
+    }
+
+    private String git(String... arguments) {
+        try {
+            var process = start(arguments);
+            return await(process, () -> {
+                try (var stdout = process.getInputStream()) {
+                    return new String(stdout.readAllBytes(), StandardCharsets.UTF_8).strip();
+                }
+            });
+        } catch (IOException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").finest("Failed to run git in %s: %s"
+                    .formatted(directory, exception));
+            return null;
+        }
+    }
+
+    private Process start(String... arguments) throws IOException {
+        var command = new ArrayList<String>();
+        command.add(settings.git());
+        command.add("--git-dir=" + directory);
+        command.addAll(List.of(arguments));
+        return new ProcessBuilder(command).redirectError(DISCARD).start();
+    }
+
+    /**
+     * Drains the output of the process on a virtual thread while this thread waits for it, so a
+     * git that hangs without closing its output is still killed once {@code github.mirror.timeout}
+     * has elapsed.
+     *
+     * @return what the reader produced, or {@code null} if git exited unsuccessfully
+     */
+    private <T> T await(Process process, Callable<T> reader) throws IOException {
+        var output = new FutureTask<>(reader);
+        Thread.ofVirtual().name("git-mirror-reader").start(output);
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.timeout());
+        try {
+            if (!process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                throw new IOException("git timed out in " + directory);
+            var result = output.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return process.exitValue() == 0 ? result : null;
+        } catch (TimeoutException exception) {
+            throw new IOException("git timed out in " + directory);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            // a reader failing on the output of a git that reported an error is just that error
+            if (!process.isAlive() && process.exitValue() != 0) return null;
+            if (exception.getCause() instanceof IOException cause) throw cause;
+            throw new IOException(exception.getCause());
+        } finally {
+            if (process.isAlive()) process.destroyForcibly();
+            output.cancel(true);
+        }
+    }
+
+    private static boolean isName(String name) {
+        return NAME.matcher(name).matches() && !name.equals(".") && !name.equals("..");
+    }
+
+    record Settings(Path directory, String git, long timeout) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var directory = new String[1];
+            var git = new String[]{"git"};
+            var timeout = new long[]{60};
+            configuration.hasString("github.mirror.directory", value -> directory[0] = value);
+            configuration.hasString("github.mirror.git", value -> git[0] = value);
+            configuration.hasLong("github.mirror.timeout", value -> timeout[0] = value);
+            if (directory[0] == null || directory[0].isBlank()) return null;
+            return new Settings(Path.of(directory[0]).toAbsolutePath().normalize(), git[0], timeout[0]);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.GitHubRateLimit;
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiForbiddenException;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Paces outgoing GitHub requests per credential and rate limit resource ({@code core},
+ * {@code graphql}, {@code search}) based on the {@code X-RateLimit-*} and
+ * {@code Retry-After} response headers. GitHub keeps a separate budget per resource, so a
+ * drained GraphQL budget does not hold back REST calls with the same token. Once the remaining budget drops below the pacing
+ * threshold, requests are spread evenly over the time left until the reset; rate limited
+ * responses block the credential for the advertised or a jittered exponential delay.
+ */
+public final class GitHubRateLimiter {
+    private static final Map<Key, Budget> BUDGETS = new ConcurrentHashMap<>();
+    private static final String ANONYMOUS = "";
+    public static final String CORE = "core";
+
+    private GitHubRateLimiter() {
+    }
+
+    /**
+     * @return the rate limit resource a request against the URI is counted against, or
+     * {@code null} if it does not target the configured API, such as raw file and codeload
+     * downloads, which cost no API quota and carry no rate limit headers
+     */
+    public static String resource(URI uri, ReadableKeyedConfiguration configuration) {
+        var api = URI.create(GitHubEndpoints.api(configuration));
+        var path = uri.getPath() == null ? "" : uri.getPath();
+        var base = api.getPath() == null ? "" : api.getPath();
+        if (!api.getScheme().equalsIgnoreCase(uri.getScheme()) || uri.getAuthority() == null
+                || !uri.getAuthority().equalsIgnoreCase(api.getAuthority())
+                || !(path.equals(base) || path.startsWith(base + "/"))) return null;
+        return resource(uri);
+    }
+
+    static String resource(URI uri) {
+        var path = uri.getPath() == null ? "" : uri.getPath();
+        if (path.endsWith("/graphql")) return "graphql";
+        if (path.startsWith("/search/") || path.contains("/api/v3/search/")) return "search";
+        return CORE;
+    }
+
+    public static String select(List<String> tokens, String resource) {
+        if (tokens.isEmpty()) return null;
+        if (tokens.size() == 1) return tokens.get(0);
+        var now = System.currentTimeMillis();
+        var offset = ThreadLocalRandom.current().nextInt(tokens.size());
+        String best = null, earliest = null;
+        long bestHeadroom = -1, earliestAvailable = Long.MAX_VALUE;
+        for (var i = 0; i < tokens.size(); i++) {
+            var token = tokens.get((offset + i) % tokens.size());
+            var budget = budget(token, resource);
+            var available = budget.availableAt(now);
+            if (available > now) {
+                if (available < earliestAvailable) {
+                    earliestAvailable = available;
+                    earliest = token;
+                }
+                continue;
+            }
+            var headroom = budget.headroom(now);
+            if (headroom > bestHeadroom) {
+                bestHeadroom = headroom;
+                best = token;
+            }
+        }
+        return best != null ? best : earliest;
+    }
+
+    public static void acquire(String token, String resource, ReadableKeyedConfiguration configuration) throws InterruptedIOException {
+        var settings = Settings.of(configuration);
+        var budget = budget(token, resource);
+        var now = System.currentTimeMillis();
+        var earliest = Math.max(now, budget.blockedUntil.get());
+        if (budget.remaining.get() == 0 && budget.reset.get() > earliest) earliest = budget.reset.get();
+        var interval = budget.interval(now, settings);
+        var from = earliest;
+        var start = Math.max(budget.nextSlot.getAndUpdate(slot -> Math.max(slot, from) + interval), earliest);
+        var wait = start - now;
+        if (wait > settings.maxWait().toMillis()) throw new GitHubApiForbiddenException();
+        if (wait > 0) {
+            Logger.getLogger("whichlicense.sourcing.github")
+                    .finest("Delaying GitHub request by %d ms to stay within the rate limit".formatted(wait));
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit");
+            }
+        }
+        consume(token, resource);
+    }
+
+    /**
+     * Counts a request against the budget without waiting, such as a hedged duplicate.
+     */
+    public static void consume(String token, String resource) {
+        budget(token, resource).remaining.getAndUpdate(remaining -> remaining > 0 ? remaining - 1 : remaining);
+    }
+
+    /**
+     * @return whether requests with the credential are currently paced or blocked
+     */
+    public static boolean constrained(String token, String resource, ReadableKeyedConfiguration configuration) {
+        var budget = budget(token, resource);
+        var now = System.currentTimeMillis();
+        return budget.availableAt(now) > now || budget.interval(now, Settings.of(configuration)) > 0;
+    }
+
+    /**
+     * @param resource the resource the request was expected to count against, overridden by the
+     *                 {@code X-RateLimit-Resource} header of the response
+     */
+    public static void update(String token, String resource, HttpHeaders headers) {
+        var budget = budget(token, headers.firstValue("X-RateLimit-Resource").orElse(resource));
+        header(headers, "X-RateLimit-Limit").ifPresent(limit -> budget.limit.set((int) limit));
+        header(headers, "X-RateLimit-Reset").ifPresent(reset -> budget.reset.set(reset * 1000));
+        header(headers, "X-RateLimit-Remaining").ifPresent(remaining -> {
+            budget.remaining.set((int) remaining);
+            GitHubTelemetry.metrics().rateLimit(budget.credential, budget.resource, budget.limit.get(), (int) remaining);
+        });
+    }
+
+    public static boolean retry(List<String> tokens, String token, String resource, int status, HttpHeaders headers,
+                                String body, int attempt, ReadableKeyedConfiguration configuration) {
+        var settings = Settings.of(configuration);
+        if (attempt >= settings.maxRetries() + Math.max(0, tokens.size() - 1)) return false;
+        var budget = budget(token, headers.firstValue("X-RateLimit-Resource").orElse(resource));
+        var now = System.currentTimeMillis();
+        long delay;
+        var retryAfter = header(headers, "Retry-After");
+        if (retryAfter.isPresent()) {
+            delay = retryAfter.getAsLong() * 1000;
+        } else if (header(headers, "X-RateLimit-Remaining").orElse(-1) == 0) {
+            delay = Math.max(0, budget.reset.get() - now) + ThreadLocalRandom.current().nextLong(1000);
+        } else if (status == 429 || body.toLowerCase().contains("rate limit")) {
+            var ceiling = settings.backoff().toMillis() << Math.min(attempt, 16);
+            delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        } else return false;
+        budget.blockedUntil.accumulateAndGet(now + delay, Math::max);
+        Logger.getLogger("whichlicense.sourcing.github")
+                .finest("GitHub rate limit hit (status %d) for %s, blocked for %d ms".formatted(status, budget.credential, delay));
+        return delay <= settings.maxWait().toMillis()
+                || tokens.stream().anyMatch(other -> budget(other, budget.resource).availableAt(now) <= now);
+    }
+
+    static OptionalLong header(HttpHeaders headers, String name) {
+        try {
+            return headers.firstValueAsLong(name);
+        } catch (NumberFormatException exception) {
+            return OptionalLong.empty();
+        }
+    }
+
+    public static List<GitHubRateLimit> snapshot() {
+        return BUDGETS.values().stream().filter(budget -> budget.limit.get() >= 0).map(Budget::snapshot).toList();
+    }
+
+    private static Budget budget(String token, String resource) {
+        return BUDGETS.computeIfAbsent(new Key(token == null ? ANONYMOUS : token, resource), Budget::new);
+    }
+
+    private record Key(String token, String resource) {
+    }
+
+    private static final class Budget {
+        private final String credential;
+        private final String resource;
+        private final AtomicInteger limit = new AtomicInteger(-1);
+        private final AtomicInteger remaining = new AtomicInteger(-1);
+        private final AtomicLong reset = new AtomicLong();
+        private final AtomicLong nextSlot = new AtomicLong();
+        private final AtomicLong blockedUntil = new AtomicLong();
+
+        private Budget(Key key) {
+            var token = key.token();
+            this.credential = token.isEmpty() ? "anonymous"
+                    : "token:..." + token.substring(Math.max(0, token.length() - 4));
+            this.resource = key.resource();
+        }
+
+        private long availableAt(long now) {
+            var available = blockedUntil.get();
+            if (remaining.get() == 0 && reset.get() > now) available = Math.max(available, reset.get());
+            return available;
+        }
+
+        private long headroom(long now) {
+            if (remaining.get() < 0) return Long.MAX_VALUE;
+            return reset.get() <= now ? Math.max(limit.get(), remaining.get()) : remaining.get();
+        }
+
+        private long interval(long now, Settings settings) {
+            var left = remaining.get();
+            if (left < 0 || left >= settings.pacingThreshold()) return 0;
+            return left == 0 ? 0 : Math.max(0, reset.get() - now) / left;
+        }
+
+        private GitHubRateLimit snapshot() {
+            return new GitHubRateLimit(credential, resource, limit.get(), remaining.get(), Instant.ofEpochMilli(reset.get()));
+        }
+    }
+
+    record Settings(int maxRetries, int pacingThreshold, Duration backoff, Duration maxWait) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var maxRetries = new int[]{3};
+            var pacingThreshold = new int[]{100};
+            var backoff = new long[]{1_000};
+            var maxWait = new long[]{300};
+            configuration.hasInteger("github.ratelimit.max-retries", value -> maxRetries[0] = value);
+            configuration.hasInteger("github.ratelimit.pacing-threshold", value -> pacingThreshold[0] = value);
+            configuration.hasLong("github.ratelimit.backoff", value -> backoff[0] = value);
+            configuration.hasLong("github.ratelimit.max-wait", value -> maxWait[0] = value);
+            return new Settings(maxRetries[0], pacingThreshold[0], Duration.ofMillis(Math.max(1, backoff[0])),
+                    Duration.ofSeconds(maxWait[0]));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.GitHubRefCacheStats;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory cache of ref resolutions. Branches are mutable and expire quickly,
+ * tags and commit-to-tags mappings are treated as immutable, and refs reported missing by
+ * GitHub are remembered for the negative TTL. A negative TTL setting keeps entries of that
+ * kind until they are evicted, zero disables caching them. Once the bound is exceeded the
+ * least recently used entry is evicted.
+ */
+public final class GitHubRefCache {
+    private static final Map<Settings, GitHubRefCache> SHARED = new ConcurrentHashMap<>();
+    private final Settings settings;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    GitHubRefCache(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static GitHubRefCache shared(ReadableKeyedConfiguration configuration) {
+        return SHARED.computeIfAbsent(Settings.of(configuration), GitHubRefCache::new);
+    }
+
+    public static GitHubRefCacheStats stats() {
+        return SHARED.values().stream().map(GitHubRefCache::snapshot).reduce(new GitHubRefCacheStats(0, 0, 0, 0, 0),
+                (left, right) -> new GitHubRefCacheStats(left.hits() + right.hits(), left.negativeHits() + right.negativeHits(),
+                        left.misses() + right.misses(), left.evictions() + right.evictions(), left.size() + right.size()));
+    }
+
+    /**
+     * @return the cached resolution, holding {@code null} for a ref known to be missing, or
+     * {@code null} on a cache miss
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Hit<T> lookup(Kind kind, String ref) {
+        var entry = get(new Key(kind, ref));
+        GitHubTelemetry.metrics().cache("refs", entry != null);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        (entry.value() == null ? negativeHits : hits).increment();
+        return new Hit<>((T) entry.value());
+    }
+
+    public void store(Kind kind, String ref, Object value) {
+        put(new Key(kind, ref), value, switch (kind) {
+            case BRANCH -> settings.mutableTtl();
+            case TAG, COMMIT -> settings.immutableTtl();
+        });
+    }
+
+    public void storeMissing(Kind kind, String ref) {
+        put(new Key(kind, ref), null, settings.negativeTtl());
+    }
+
+    GitHubRefCacheStats snapshot() {
+        lock.lock();
+        try {
+            return new GitHubRefCacheStats(hits.sum(), negativeHits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry get(Key key) {
+        lock.lock();
+        try {
+            var entry = entries.get(key);
+            if (entry != null && entry.expires() != Long.MAX_VALUE && entry.expires() - System.nanoTime() < 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Key key, Object value, Duration ttl) {
+        if (ttl.isZero() || settings.maxEntries() <= 0) return;
+        var expires = ttl.isNegative() ? Long.MAX_VALUE : System.nanoTime() + ttl.toNanos();
+        lock.lock();
+        try {
+            entries.put(key, new Entry(value, expires));
+            for (var eldest = entries.entrySet().iterator(); entries.size() > settings.maxEntries(); ) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public enum Kind {
+        BRANCH, TAG, COMMIT
+    }
+
+    public record Hit<T>(T value) {
+    }
+
+    private record Key(Kind kind, String ref) {
+    }
+
+    private record Entry(Object value, long expires) {
+    }
+
+    record Settings(Duration mutableTtl, Duration immutableTtl, Duration negativeTtl, int maxEntries) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var mutableTtl = new long[]{60};
+            var immutableTtl = new long[]{86_400};
+            var negativeTtl = new long[]{30};
+            var maxEntries = new int[]{10_000};
+            configuration.hasLong("github.cache.refs.mutable-ttl", value -> mutableTtl[0] = value);
+            configuration.hasLong("github.cache.refs.immutable-ttl", value -> immutableTtl[0] = value);
+            configuration.hasLong("github.cache.refs.negative-ttl", value -> negativeTtl[0] = value);
+            configuration.hasInteger("github.cache.refs.size", value -> maxEntries[0] = value);
+            return new Settings(Duration.ofSeconds(mutableTtl[0]), Duration.ofSeconds(immutableTtl[0]),
+                    Duration.ofSeconds(negativeTtl[0]), maxEntries[0]);
+        }
+    }
+}
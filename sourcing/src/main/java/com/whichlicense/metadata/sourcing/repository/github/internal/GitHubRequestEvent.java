@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("whichlicense.github.Request")
+@Label("GitHub Request")
+@Category({"WhichLicense", "GitHub"})
+@Description("A single HTTP exchange with the GitHub API, codeload or raw.githubusercontent.com")
+@StackTrace(false)
+class GitHubRequestEvent extends jdk.jfr.Event {
+    @Label("Endpoint")
+    String endpoint;
+    @Label("URI")
+    String uri;
+    @Label("Status")
+    int status;
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    @Label("Rate Limit Remaining")
+    int rateLimitRemaining;
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Persistent index of the last resolution of every URL, enabled by pointing
+ * {@code github.rescan.index} at a file. A URL whose ref still resolves to the recorded
+ * commit is served from the recorded archive location without downloading it again,
+ * provided it was resolved with the same archive mode, format and entry filter.
+ * The recorded tags are only a fallback: tags can be added to an unchanged commit, so the
+ * resolver still looks them up, which the response cache turns into a conditional request.
+ * The file is an append-only log of JSON lines, compacted when it is loaded. Appends and
+ * compactions hold a file lock next to the index, so several JVMs can share it.
+ */
+public final class GitHubRescanIndex {
+    private static final Map<Path, GitHubRescanIndex> SHARED = new ConcurrentHashMap<>();
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    GitHubRescanIndex(Path file) {
+        this.file = file.toAbsolutePath().normalize();
+        load();
+    }
+
+    public static GitHubRescanIndex of(ReadableKeyedConfiguration configuration) {
+        var file = new String[1];
+        configuration.hasString("github.rescan.index", value -> file[0] = value);
+        if (file[0] == null || file[0].isBlank()) return null;
+        return SHARED.computeIfAbsent(Path.of(file[0]).toAbsolutePath().normalize(), GitHubRescanIndex::new);
+    }
+
+    /**
+     * @return the recorded resolution if it is of the given commit and its archive still exists
+     */
+    public Entry unchanged(URL url, String variant, String sha) {
+        var entry = entries.get(key(url.toExternalForm(), variant));
+        if (entry == null || !entry.sha().equals(sha) || !Files.isDirectory(entry.root())) return null;
+        Logger.getLogger("whichlicense.sourcing.github").finest("%s is unchanged at %s".formatted(url, sha));
+        return entry;
+    }
+
+    /**
+     * Records a resolution. Roots outside the default file system are not persistent and skipped.
+     */
+    public void record(URL url, String variant, String sha, Set<String> tags, Path root) {
+        if (root == null || root.getFileSystem() != FileSystems.getDefault()) return;
+        var entry = new Entry(url.toExternalForm(), variant, sha, Set.copyOf(tags), root.toAbsolutePath().toString());
+        if (entry.equals(entries.put(entry.key(), entry))) return;
+        try {
+            var line = GitHubJson.MAPPER.writeValueAsString(entry) + "\n";
+            Files.createDirectories(file.getParent());
+            withLock(() -> Files.writeString(file, line, StandardCharsets.UTF_8, CREATE, WRITE, APPEND));
+        } catch (IOException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Unable to update the rescan index " + file, exception);
+        }
+    }
+
+    /**
+     * Reads the log and compacts it under the same lock, so no line appended in between is lost.
+     */
+    private void load() {
+        if (Files.notExists(file)) return;
+        try {
+            withLock(() -> {
+                var lines = 0;
+                try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    for (String line; (line = reader.readLine()) != null; lines++) {
+                        if (line.isBlank()) continue;
+                        try {
+                            var entry = GitHubJson.MAPPER.readValue(line, Entry.class);
+                            // entries recorded before variants were tracked may describe a differently filtered tree
+                            if (!entry.variant().isEmpty()) entries.put(entry.key(), entry);
+                        } catch (IOException exception) {
+                            Logger.getLogger("whichlicense.sourcing.github").finest("Skipping corrupt rescan index line: " + line);
+                        }
+                    }
+                } catch (NoSuchFileException exception) {
+                    return;
+                }
+                if (lines > entries.size()) compact();
+            });
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void compact() {
+        try {
+            var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            var content = new StringBuilder();
+            for (var entry : entries.values()) content.append(GitHubJson.MAPPER.writeValueAsString(entry)).append('\n');
+            Files.writeString(temporary, content, StandardCharsets.UTF_8);
+            Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Unable to compact the rescan index " + file, exception);
+        }
+    }
+
+    private void withLock(IOAction action) throws IOException {
+        var lock = LOCKS.computeIfAbsent(file, ignored -> new ReentrantLock());
+        lock.lock();
+        try (var channel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"), CREATE, WRITE)) {
+            var fileLock = channel.lock();
+            try {
+                action.run();
+            } finally {
+                fileLock.release();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static String key(String url, String variant) {
+        return url + " " + variant;
+    }
+
+    public record Entry(String url, String variant, String sha, Set<String> tags, String path) {
+        public Entry {
+            Objects.requireNonNull(url);
+            variant = variant == null ? "" : variant;
+            Objects.requireNonNull(sha);
+            tags = tags == null ? Set.of() : Set.copyOf(tags);
+            Objects.requireNonNull(path);
+        }
+
+        public Path root() {
+            return Path.of(path);
+        }
+
+        private String key() {
+            return GitHubRescanIndex.key(url, variant);
+        }
+    }
+}
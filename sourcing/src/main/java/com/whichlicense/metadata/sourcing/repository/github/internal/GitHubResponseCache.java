@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * In-memory cache of GitHub API responses bounded by the size of their bodies
+ * ({@code github.cache.api.size} bytes), with an optional disk backing. Entries keep the
+ * body and the {@code ETag} of a URL as seen by the one token that requested it, so a
+ * response is never replayed to callers without that token or to anonymous callers. A caller
+ * with a pool of tokens is served the entry of any token in its pool, since its request could
+ * have been sent with any of them. Entries are served without revalidation while they are
+ * younger than the TTL and are revalidated with {@code If-None-Match} afterwards, only by a
+ * request sent with the token that stored them.
+ */
+public final class GitHubResponseCache {
+    private static final Map<Settings, GitHubResponseCache> SHARED = new ConcurrentHashMap<>();
+    private static final String ANONYMOUS = "anonymous";
+    private final Settings settings;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private GitHubResponseCache(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static GitHubResponseCache shared(ReadableKeyedConfiguration configuration) {
+        return SHARED.computeIfAbsent(Settings.of(configuration), GitHubResponseCache::new);
+    }
+
+    /**
+     * @param token the token the request was sent with, {@code null} for anonymous requests
+     * @return a fingerprint of the token, scoping the cached responses
+     */
+    public static String credential(String token) {
+        if (token == null) return ANONYMOUS;
+        return HexFormat.of().formatHex(sha256(token), 0, 16);
+    }
+
+    public Entry lookup(URI uri, String credential) {
+        if (settings.maxBytes() <= 0) return null;
+        var key = new Key(uri, credential);
+        var entry = get(key);
+        if (entry == null && settings.directory() != null && read(key) instanceof Entry stored) {
+            put(key, stored);
+            return stored;
+        }
+        return entry;
+    }
+
+    public void store(URI uri, String credential, Entry entry) {
+        if (settings.maxBytes() <= 0 || entry.body().length > settings.maxBytes()) return;
+        var key = new Key(uri, credential);
+        put(key, entry);
+        if (settings.directory() != null) write(key, entry);
+    }
+
+    private synchronized Entry get(Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Inserts the entry and evicts the least recently used ones until the bodies fit the budget.
+     */
+    private synchronized void put(Key key, Entry entry) {
+        var previous = entries.put(key, entry);
+        bytes += entry.body().length - (previous == null ? 0 : previous.body().length);
+        for (var eldest = entries.values().iterator(); bytes > settings.maxBytes() && eldest.hasNext(); ) {
+            bytes -= eldest.next().body().length;
+            eldest.remove();
+        }
+    }
+
+    public boolean isFresh(Entry entry) {
+        return entry.stored().plus(settings.ttl()).isAfter(Instant.now());
+    }
+
+    private Entry read(Key key) {
+        var uri = key.uri();
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(key))))) {
+            if (!Objects.equals(input.readUTF(), uri.toString())) return null;
+            if (!Objects.equals(input.readUTF(), key.credential())) return null;
+            var etag = input.readUTF();
+            var link = input.readUTF();
+            var stored = Instant.ofEpochMilli(input.readLong());
+            return new Entry(etag, link.isEmpty() ? null : link, input.readNBytes(input.readInt()), stored);
+        } catch (NoSuchFileException exception) {
+            return null;
+        } catch (IOException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Unable to read cached response for " + uri, exception);
+            return null;
+        }
+    }
+
+    private void write(Key key, Entry entry) {
+        var uri = key.uri();
+        try {
+            var file = file(key);
+            Files.createDirectories(file.getParent());
+            var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.writeUTF(uri.toString());
+                output.writeUTF(key.credential());
+                output.writeUTF(entry.etag());
+                output.writeUTF(entry.link() == null ? "" : entry.link());
+                output.writeLong(entry.stored().toEpochMilli());
+                output.writeInt(entry.body().length);
+                output.write(entry.body());
+            }
+            Files.move(temp, file, ATOMIC_MOVE);
+        } catch (IOException exception) {
+            Logger.getLogger("whichlicense.sourcing.github").log(WARNING, "Unable to persist cached response for " + uri, exception);
+        }
+    }
+
+    private Path file(Key key) {
+        var name = HexFormat.of().formatHex(sha256(key.credential() + " " + key.uri()));
+        return settings.directory().resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private record Key(URI uri, String credential) {
+    }
+
+    public record Entry(String etag, String link, byte[] body, Instant stored) {
+        public Entry {
+            Objects.requireNonNull(etag);
+            Objects.requireNonNull(body);
+            Objects.requireNonNull(stored);
+        }
+
+        public Entry revalidated() {
+            return new Entry(etag, link, body, Instant.now());
+        }
+
+        public GitHubApiResponse response() {
+            var headers = new HashMap<String, List<String>>();
+            headers.put("ETag", List.of(etag));
+            if (link != null) headers.put("Link", List.of(link));
+            return new GitHubApiResponse(200, HttpHeaders.of(headers, (name, value) -> true), body);
+        }
+    }
+
+    record Settings(Duration ttl, long maxBytes, Path directory) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var ttl = new long[]{0};
+            var maxBytes = new long[]{32L << 20};
+            var directory = new Path[1];
+            configuration.hasLong("github.cache.api.ttl", value -> ttl[0] = value);
+            configuration.hasLong("github.cache.api.size", value -> maxBytes[0] = value);
+            configuration.hasString("github.cache.api.directory", value -> {
+                if (!value.isBlank()) directory[0] = Path.of(value);
+            });
+            return new Settings(Duration.ofSeconds(Math.max(0, ttl[0])), maxBytes[0], directory[0]);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.GitHubMetrics;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the installed {@link GitHubMetrics} and classifies requests by endpoint. Call sites
+ * only take timestamps when either the metrics or the corresponding JFR event are enabled.
+ */
+public final class GitHubTelemetry {
+    private static volatile GitHubMetrics metrics = ServiceLoader.load(GitHubMetrics.class)
+            .findFirst().orElse(GitHubMetrics.NOOP);
+
+    private GitHubTelemetry() {
+    }
+
+    public static GitHubMetrics metrics() {
+        return metrics;
+    }
+
+    public static void install(GitHubMetrics metrics) {
+        GitHubTelemetry.metrics = Objects.requireNonNull(metrics);
+    }
+
+    static boolean observed(jdk.jfr.Event event) {
+        return metrics != GitHubMetrics.NOOP || event.isEnabled();
+    }
+
+    static void request(GitHubRequestEvent event, URI uri, int status, long bytes, int remaining, long started) {
+        var endpoint = endpoint(uri);
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint;
+            event.uri = uri.toString();
+            event.status = status;
+            event.bytes = bytes;
+            event.rateLimitRemaining = remaining;
+            event.commit();
+        }
+        metrics.request(endpoint, status, bytes, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    static void archive(GitHubArchiveEvent event, String username, String repository, String sha, ArchiveMode mode,
+                        long bytes, long extraction, long started) {
+        var name = mode.name().toLowerCase(Locale.ROOT);
+        if (event.shouldCommit()) {
+            event.repository = username + "/" + repository;
+            event.sha = sha;
+            event.mode = name;
+            event.bytes = bytes;
+            event.extraction = extraction;
+            event.commit();
+        }
+        metrics.archive(name, bytes, Duration.ofNanos(System.nanoTime() - started), Duration.ofNanos(extraction));
+    }
+
+    public static final List<String> ENDPOINTS = List.of("archive", "raw", "graphql", "zipball", "tarball", "tree",
+            "tag", "tags", "branch", "repository", "other");
+
+    public static String endpoint(URI uri) {
+        var host = uri.getHost() == null ? "" : uri.getHost();
+        var path = uri.getPath() == null ? "" : uri.getPath();
+        if (host.startsWith("codeload.")) return "archive";
+        if (host.startsWith("raw.")) return "raw";
+        if (path.endsWith("/graphql")) return "graphql";
+        if (path.contains("/zipball")) return "zipball";
+        if (path.contains("/tarball")) return "tarball";
+        if (path.contains("/git/trees/")) return "tree";
+        if (path.contains("/git/ref/tags/")) return "tag";
+        if (path.contains("/git/refs/tags")) return "tags";
+        if (path.contains("/branches/")) return "branch";
+        if (path.matches(".*/repos/[^/]+/[^/]+/?")) return "repository";
+        return "other";
+    }
+}
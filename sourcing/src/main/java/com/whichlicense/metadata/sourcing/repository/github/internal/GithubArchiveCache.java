@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * On-disk cache of extracted GitHub archives keyed by {@code owner/repository/sha}.
+ * Entries are published with an atomic rename, so lookups never observe partially
+ * written trees. Lookups, insertions and evictions are serialized through an in-process
+ * lock plus a file lock, which makes the cache safe to share between several JVMs on the
+ * same host. The last-modified time of an entry directory records its last access and
+ * drives the LRU eviction once the size budget is exceeded. A lookup leases the entry it
+ * returns: entries accessed within the lease ({@code github.cache.archive.lease}) are not
+ * evicted, so a caller can scan the tree while another JVM stores new entries, at the cost
+ * of exceeding the budget while all entries are leased.
+ * <p>
+ * With {@code github.cache.archive.dedup} enabled, file contents are stored once in a blob
+ * store keyed by their SHA-256 and every entry's tree is made of read-only hard links into
+ * it, so successive commits of a repository only add the files they changed. The link count
+ * of a blob is its reference count: once evictions leave a blob with a single link it is
+ * garbage collected, and the size budget applies to the blob store. Its size is kept as a
+ * running total next to the lock file, so the store is only swept after an eviction.
+ * Extractions writing through {@link #writer()} into a {@link #scratch()} directory hash the
+ * files while they stream in and link contents the store already holds instead of writing
+ * them, so storing their tree needs neither a second read nor a copy.
+ */
+public final class GithubArchiveCache {
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<Path, Set<Object>> CREATED = new ConcurrentHashMap<>();
+    private static final Duration STALE_STAGING = Duration.ofDays(1);
+    private static final String STAGING = ".staging";
+    private static final String LOCK = ".lock";
+    private static final String SIZE = ".size";
+    private static final String BLOBS = ".blobs";
+    private static final String BLOBS_SIZE = ".blobs.size";
+    private final Path root;
+    private final long budget;
+    private final boolean dedup;
+    private final Duration lease;
+
+    public GithubArchiveCache(Path root, long budget) {
+        this(root, budget, false);
+    }
+
+    public GithubArchiveCache(Path root, long budget, boolean dedup) {
+        this(root, budget, dedup, Duration.ZERO);
+    }
+
+    public GithubArchiveCache(Path root, long budget, boolean dedup, Duration lease) {
+        this.root = Objects.requireNonNull(root).toAbsolutePath().normalize();
+        this.budget = budget;
+        this.dedup = dedup && this.root.getFileSystem().supportedFileAttributeViews().contains("unix");
+        this.lease = Objects.requireNonNull(lease);
+    }
+
+    public static GithubArchiveCache of(ReadableKeyedConfiguration configuration) {
+        var directory = new String[1];
+        var budget = new long[]{1L << 30};
+        var dedup = new boolean[1];
+        var lease = new long[]{600};
+        configuration.hasString("github.cache.archive.directory", value -> directory[0] = value);
+        configuration.hasLong("github.cache.archive.size", value -> budget[0] = value);
+        configuration.hasBoolean("github.cache.archive.dedup", value -> dedup[0] = value);
+        configuration.hasLong("github.cache.archive.lease", value -> lease[0] = value);
+        return directory[0] == null || directory[0].isBlank() ? null
+                : new GithubArchiveCache(Path.of(directory[0]), budget[0], dedup[0], Duration.ofSeconds(Math.max(0, lease[0])));
+    }
+
+    /**
+     * @return the cached tree, which is not evicted before the lease ends
+     */
+    public Path lookup(String username, String repository, String sha) {
+        var entry = entry(username, repository, sha);
+        if (!Files.isDirectory(entry)) return null;
+        try {
+            var tree = new Path[1];
+            // marks the access under the lock, so a concurrent eviction either sees the lease or already removed the entry
+            withLock(() -> {
+                try (var children = Files.list(entry)) {
+                    tree[0] = children.filter(Files::isDirectory).findFirst().orElse(null);
+                }
+                if (tree[0] != null) Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+            });
+            if (tree[0] == null) return null;
+            logger().finest("Archive cache hit for %s/%s@%s".formatted(username, repository, sha));
+            return tree[0];
+        } catch (NoSuchFileException exception) {
+            return null;
+        } catch (IOException exception) {
+            logger().log(WARNING, "Unable to read archive cache entry " + entry, exception);
+            return null;
+        }
+    }
+
+    public Path store(String username, String repository, String sha, Path extractedRoot) {
+        var entry = entry(username, repository, sha);
+        try {
+            var staging = Files.createDirectories(root.resolve(STAGING)).resolve(UUID.randomUUID().toString());
+            Files.createDirectory(staging);
+            var tree = staging.resolve(extractedRoot.getFileName().toString());
+            var added = new long[1];
+            if (dedup) added[0] = linkTree(extractedRoot, tree, staging);
+            else moveTree(extractedRoot, tree);
+            Files.writeString(staging.resolve(SIZE), Long.toString(sizeOf(tree)));
+
+            withLock(() -> {
+                Files.createDirectories(entry.getParent());
+                // renaming onto a non-empty directory fails with a plain FileSystemException on Linux
+                if (Files.exists(entry)) {
+                    if (dedup) added[0] -= released(staging);
+                    deleteTree(staging);
+                } else {
+                    Files.move(staging, entry, ATOMIC_MOVE);
+                }
+                Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+                evict(entry, added[0]);
+            });
+            return lookup(username, repository, sha);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * @return a new directory to extract into, on the file system of the blob store when
+     * deduplicating
+     */
+    public Path scratch() throws IOException {
+        if (!dedup) return Files.createTempDirectory("whichlicense-archive-");
+        return Files.createDirectory(Files.createDirectories(root.resolve(STAGING)).resolve(UUID.randomUUID().toString()));
+    }
+
+    public ArchiveEntryWriter writer() {
+        return dedup ? BlobWriter::new : ArchiveEntryWriter.FILES;
+    }
+
+    /**
+     * @return the scratch directory the given path was extracted into, or {@code null} if it
+     * lies outside the staging area
+     */
+    private Path scratchOf(Path path) {
+        var staging = root.resolve(STAGING);
+        var normalized = path.toAbsolutePath().normalize();
+        if (!normalized.startsWith(staging) || normalized.getNameCount() <= staging.getNameCount()) return null;
+        return staging.resolve(normalized.getName(staging.getNameCount()).toString());
+    }
+
+    private Path entry(String username, String repository, String sha) {
+        var entry = root.resolve(username).resolve(repository).resolve(sha).normalize();
+        if (!entry.startsWith(root) || entry.getNameCount() != root.getNameCount() + 3)
+            throw new IllegalArgumentException("Invalid archive cache key %s/%s@%s".formatted(username, repository, sha));
+        return entry;
+    }
+
+    /**
+     * @param added the size of the blobs the stored entry added to the blob store
+     */
+    private void evict(Path keep, long added) throws IOException {
+        var entries = dedup ? null : entries();
+        var total = dedup ? blobsSize(added) : entries.stream().mapToLong(Entry::size).sum();
+        if (total > budget) total = evict(keep, total, dedup ? entries() : entries);
+        if (dedup) Files.writeString(root.resolve(BLOBS_SIZE), Long.toString(total));
+    }
+
+    /**
+     * @return the size of the cache after evicting its least recently used entries
+     */
+    private long evict(Path keep, long total, List<Entry> entries) throws IOException {
+        entries.sort(Comparator.comparing(Entry::accessed));
+        var leased = Instant.now().minus(lease);
+        var evicted = false;
+        for (var entry : entries) {
+            if (total <= budget) break;
+            if (entry.accessed().toInstant().isAfter(leased)) {
+                logger().finest("Archive cache exceeds its budget, the remaining entries are leased");
+                break;
+            }
+            if (entry.path().equals(keep)) continue;
+            var doomed = root.resolve(STAGING).resolve(UUID.randomUUID() + "-evicted");
+            Files.move(entry.path(), doomed, ATOMIC_MOVE);
+            total -= dedup ? released(doomed) : entry.size();
+            deleteTree(doomed);
+            evicted = true;
+            logger().finest("Evicted archive cache entry " + entry.path());
+        }
+        return evicted && dedup ? collectBlobs() : total;
+    }
+
+    /**
+     * @return the running total of the blob store after {@code added} bytes were added to it,
+     * measured by a sweep if it was never recorded
+     */
+    private long blobsSize(long added) throws IOException {
+        try {
+            return Long.parseLong(Files.readString(root.resolve(BLOBS_SIZE)).trim()) + added;
+        } catch (NoSuchFileException | NumberFormatException exception) {
+            return collectBlobs();
+        }
+    }
+
+    /**
+     * Rebuilds the tree from hard links into the blob store. Files the {@link #writer()} already
+     * linked are moved as they are, contents already in the store are linked without being
+     * written again, new contents are moved into the tree and linked from the store. A blob
+     * collected concurrently, or one at the link limit of the file system, only costs the
+     * sharing of that file.
+     *
+     * @return the size of the blobs added to the store, counting the blobs the writer created in
+     * the scratch directory of the tree once however many files link to them
+     */
+    private long linkTree(Path source, Path target, Path staging) throws IOException {
+        var temporary = staging.resolve(".link");
+        var scratch = scratchOf(source);
+        var created = scratch == null ? null : CREATED.remove(scratch);
+        var added = 0L;
+        try (var paths = Files.walk(source)) {
+            for (var path : (Iterable<Path>) paths::iterator) {
+                var destination = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(destination);
+                    continue;
+                }
+                var links = (int) Files.getAttribute(path, "unix:nlink");
+                if (links > 1) {
+                    var fresh = created != null && created.remove(Files.getAttribute(path, "unix:ino"));
+                    Files.move(path, destination, ATOMIC_MOVE);
+                    if (fresh) added += Files.size(destination);
+                    continue;
+                }
+                var blob = blob(path);
+                try {
+                    Files.createLink(temporary, blob);
+                    Files.move(temporary, destination, ATOMIC_MOVE);
+                    continue;
+                } catch (FileSystemException ignored) {
+                }
+                try {
+                    Files.move(path, destination, ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException exception) {
+                    Files.copy(path, destination, REPLACE_EXISTING);
+                }
+                destination.toFile().setWritable(false, false);
+                try {
+                    Files.createDirectories(blob.getParent());
+                    Files.createLink(blob, destination);
+                    added += Files.size(destination);
+                } catch (FileAlreadyExistsException ignored) {
+                }
+            }
+        }
+        deleteTree(source);
+        return added;
+    }
+
+    private Path blob(Path file) throws IOException {
+        var digest = sha256();
+        try (var input = new DigestInputStream(Files.newInputStream(file), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return blob(digest);
+    }
+
+    private Path blob(MessageDigest digest) {
+        var hash = HexFormat.of().formatHex(digest.digest());
+        return root.resolve(BLOBS).resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Deletes every blob no entry links to anymore.
+     *
+     * @return the size of the remaining blobs
+     */
+    private long collectBlobs() throws IOException {
+        var remaining = 0L;
+        try (var blobs = Files.find(root.resolve(BLOBS), 2, (path, attributes) -> attributes.isRegularFile())) {
+            for (var blob : (Iterable<Path>) blobs::iterator) {
+                try {
+                    if ((int) Files.getAttribute(blob, "unix:nlink") <= 1) Files.delete(blob);
+                    else remaining += Files.size(blob);
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the size of the blobs only the given tree links to, freed once it is deleted
+     */
+    private static long released(Path tree) throws IOException {
+        var links = new HashMap<Object, Integer>();
+        var released = 0L;
+        try (var paths = Files.walk(tree)) {
+            for (var path : (Iterable<Path>) paths::iterator) {
+                if (!Files.isRegularFile(path)) continue;
+                var seen = links.merge(Files.getAttribute(path, "unix:ino"), 1, Integer::sum);
+                // the blob itself holds the remaining link once the last file of the tree is counted
+                if ((int) Files.getAttribute(path, "unix:nlink") == seen + 1) released += Files.size(path);
+            }
+        }
+        return released;
+    }
+
+    private List<Entry> entries() throws IOException {
+        var entries = new ArrayList<Entry>();
+        try (var paths = Files.find(root, 3, (path, attributes) -> attributes.isDirectory()
+                && path.getNameCount() == root.getNameCount() + 3)) {
+            for (var path : (Iterable<Path>) paths::iterator) {
+                if (path.startsWith(root.resolve(STAGING)) || path.startsWith(root.resolve(BLOBS))) continue;
+                try {
+                    entries.add(new Entry(path, Long.parseLong(Files.readString(path.resolve(SIZE)).trim()),
+                            Files.getLastModifiedTime(path)));
+                } catch (NoSuchFileException | NumberFormatException exception) {
+                    logger().finest("Skipping incomplete archive cache entry " + path);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void withLock(IOAction action) throws IOException {
+        var lock = LOCKS.computeIfAbsent(root, ignored -> new ReentrantLock());
+        lock.lock();
+        try (var channel = FileChannel.open(root.resolve(LOCK), CREATE, WRITE)) {
+            var fileLock = channel.lock();
+            try {
+                cleanStaging();
+                action.run();
+            } finally {
+                fileLock.release();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cleanStaging() throws IOException {
+        CREATED.keySet().removeIf(scratch -> scratch.startsWith(root) && Files.notExists(scratch));
+        var threshold = Instant.now().minus(STALE_STAGING);
+        try (var stale = Files.list(root.resolve(STAGING))) {
+            for (var path : stale.toList()) {
+                if (Files.getLastModifiedTime(path).toInstant().isBefore(threshold)) deleteTree(path);
+            }
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    private static void moveTree(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException | DirectoryNotEmptyException exception) {
+            try (var paths = Files.walk(source)) {
+                for (var path : (Iterable<Path>) paths::iterator) {
+                    var destination = target.resolve(source.relativize(path).toString());
+                    if (Files.isDirectory(path)) Files.createDirectories(destination);
+                    else Files.copy(path, destination, REPLACE_EXISTING);
+                }
+            }
+            deleteTree(source);
+        }
+    }
+
+    private static long sizeOf(Path tree) throws IOException {
+        try (var paths = Files.walk(tree)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }).sum();
+        }
+    }
+
+    static void deleteTree(Path tree) throws IOException {
+        try (Stream<Path> paths = Files.walk(tree)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(path);
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    private static Logger logger() {
+        return Logger.getLogger("whichlicense.sourcing.archive");
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private record Entry(Path path, long size, FileTime accessed) {
+    }
+
+    /**
+     * Hashes a file while it is written. Contents up to {@link #INLINE} bytes are held in memory
+     * and only written if the blob store does not hold them yet; larger contents are written as
+     * they arrive and replaced by a link if the store turns out to hold them. Either way the file
+     * ends up linked from the store, which {@link #linkTree} recognises by its link count. Blobs
+     * the writer creates are recorded for its scratch directory, so the store of the tree adds
+     * them to the running total exactly once.
+     */
+    private final class BlobWriter extends OutputStream {
+        private static final int INLINE = 1 << 20;
+        private final Path destination;
+        private final MessageDigest digest = sha256();
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream file;
+
+        private BlobWriter(Path destination) {
+            this.destination = destination;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[]{(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            digest.update(bytes, offset, length);
+            if (file == null && buffer.size() + length > INLINE) {
+                file = Files.newOutputStream(destination);
+                buffer.writeTo(file);
+                buffer = null;
+            }
+            if (file == null) buffer.write(bytes, offset, length);
+            else file.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            var blob = blob(digest);
+            if (file == null) {
+                try {
+                    Files.createLink(destination, blob);
+                    return;
+                } catch (FileSystemException missingOrFull) {
+                    Files.write(destination, buffer.toByteArray());
+                }
+            } else {
+                file.close();
+            }
+            destination.toFile().setWritable(false, false);
+            try {
+                Files.createDirectories(blob.getParent());
+                Files.createLink(blob, destination);
+                if (scratchOf(destination) instanceof Path scratch) {
+                    CREATED.computeIfAbsent(scratch, ignored -> ConcurrentHashMap.newKeySet())
+                            .add(Files.getAttribute(destination, "unix:ino"));
+                }
+            } catch (FileAlreadyExistsException exists) {
+                var link = destination.resolveSibling("." + UUID.randomUUID() + ".link");
+                try {
+                    Files.createLink(link, blob);
+                    Files.move(link, destination, ATOMIC_MOVE);
+                } catch (FileSystemException ignored) {
+                    Files.deleteIfExists(link);
+                }
+            } catch (FileSystemException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubCircuitOpenException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads archives with HTTP range requests. Every transfer writes through positional
+ * {@link FileChannel} writes and resumes from the last written offset after a connection
+ * failure, after a jittered exponential backoff. A body that stops receiving data fails the
+ * read once the idle timeout of the transport ({@code github.http.idle-timeout}) elapses and is
+ * resumed the same way. When the server announces the archive size and parallelism is
+ * configured, the remaining byte ranges are fetched concurrently. Servers ignoring range
+ * requests are read sequentially and restarted from the beginning on failure. An open circuit
+ * or an exhausted rate limit fails the download immediately.
+ * <p>
+ * Resumed and parallel range requests carry the ETag of the first response in {@code If-Range}.
+ * Codeload regenerates archives and their bytes are not stable, so when it answers with a
+ * different archive the download starts over instead of splicing the two.
+ */
+public final class GithubArchiveDownloader {
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final long UNKNOWN = -1;
+
+    private GithubArchiveDownloader() {
+    }
+
+    /**
+     * @return {@code false} if the server did not answer with the archive
+     */
+    public static boolean download(URI uri, Path target, ReadableKeyedConfiguration configuration) throws IOException {
+        var settings = Settings.of(configuration);
+        try (var channel = FileChannel.open(target, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (var restart = 0; ; restart++) {
+                try {
+                    if (!fetch(uri, channel, settings, configuration)) return false;
+                    break;
+                } catch (ArchiveChangedException exception) {
+                    if (restart >= settings.maxRetries()) throw exception;
+                    Logger.getLogger("whichlicense.sourcing.archive")
+                            .finest("Restarting the download of %s: %s".formatted(uri, exception.getMessage()));
+                    channel.truncate(0);
+                }
+            }
+        }
+        verify(target);
+        return true;
+    }
+
+    private static boolean fetch(URI uri, FileChannel channel, Settings settings,
+                                 ReadableKeyedConfiguration configuration) throws IOException {
+        var parallel = settings.parallelism() > 1;
+        var first = new Cursor(uri, 0, parallel ? settings.chunkSize() - 1 : UNKNOWN, null);
+        if (!transfer(first, channel, settings, configuration)) return false;
+        if (first.ranged && first.total != UNKNOWN && first.position < first.total) {
+            fetchRemaining(first, channel, settings, configuration);
+        }
+        if (first.total != UNKNOWN && channel.size() != first.total) throw new IOException(
+                "Downloaded %d of %d bytes from %s".formatted(channel.size(), first.total, uri));
+        return true;
+    }
+
+    private static void fetchRemaining(Cursor first, FileChannel channel, Settings settings,
+                                       ReadableKeyedConfiguration configuration) throws IOException {
+        var permits = new Semaphore(settings.parallelism());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var ranges = new ArrayList<Future<Boolean>>();
+            for (var start = first.position; start < first.total; start += settings.chunkSize()) {
+                var cursor = new Cursor(first.location, start, Math.min(start + settings.chunkSize(), first.total) - 1,
+                        first.validator);
+                ranges.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return transfer(cursor, channel, settings, configuration);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (var range : ranges) {
+                if (!range.get()) throw new IOException("Range request against %s was rejected".formatted(first.location));
+            }
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException cause) throw cause;
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException(exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + first.location);
+        }
+    }
+
+    private static boolean transfer(Cursor cursor, FileChannel channel, Settings settings,
+                                    ReadableKeyedConfiguration configuration) throws IOException {
+        var transport = GitHubHttpTransport.shared(configuration);
+        for (var attempt = 0; ; attempt++) {
+            try {
+                var range = cursor.end == UNKNOWN ? "bytes=%d-".formatted(cursor.position)
+                        : "bytes=%d-%d".formatted(cursor.position, cursor.end);
+                var headers = cursor.validator == null ? Map.of("Range", range)
+                        : Map.of("Range", range, "If-Range", cursor.validator);
+                if (!transport.get(cursor.location, null, headers, configuration,
+                        response -> copy(response, cursor, channel))) return false;
+                if (cursor.complete()) return true;
+                throw new IOException("Premature end of %s at offset %d".formatted(cursor.location, cursor.position));
+            } catch (InterruptedIOException | GitHubCircuitOpenException | ArchiveChangedException exception) {
+                throw exception;
+            } catch (IOException exception) {
+                if (attempt >= settings.maxRetries()) throw exception;
+                if (!cursor.ranged) {
+                    if (cursor.start != 0) throw exception;
+                    cursor.position = 0;
+                }
+                var delay = backoff(settings, attempt);
+                Logger.getLogger("whichlicense.sourcing.archive").finest("Resuming %s at offset %d in %d ms after: %s"
+                        .formatted(cursor.location, cursor.position, delay, exception.getMessage()));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while downloading " + cursor.location);
+                }
+            }
+        }
+    }
+
+    private static long backoff(Settings settings, int attempt) {
+        var ceiling = settings.backoff().toMillis() << Math.min(attempt, 16);
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static boolean copy(HttpResponse<InputStream> response, Cursor cursor, FileChannel channel) throws IOException {
+        var etag = response.headers().firstValue("ETag").orElse(null);
+        switch (response.statusCode()) {
+            case 206 -> {
+                if (cursor.validator != null && etag != null && !etag.equals(cursor.validator))
+                    throw new ArchiveChangedException(response.uri());
+                var matcher = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+                if (!matcher.matches() || Long.parseLong(matcher.group(1)) != cursor.position)
+                    throw new IOException("Unexpected content range from " + response.uri());
+                cursor.ranged = true;
+                cursor.total = matcher.group(3).equals("*") ? UNKNOWN : Long.parseLong(matcher.group(3));
+            }
+            case 200 -> {
+                // a full response to a conditional range request means the validator no longer matches
+                if (cursor.validator != null && cursor.position != 0) throw new ArchiveChangedException(response.uri());
+                if (cursor.start != 0) throw new IOException(response.uri() + " does not support range requests");
+                cursor.ranged = false;
+                cursor.position = 0;
+                cursor.total = response.headers().firstValueAsLong("Content-Length").orElse(UNKNOWN);
+            }
+            default -> {
+                return false;
+            }
+        }
+        cursor.location = response.uri();
+        if (cursor.validator == null && etag != null && !etag.startsWith("W/")) cursor.validator = etag;
+
+        var body = response.body();
+        var buffer = new byte[64 * 1024];
+        for (int read; (read = body.read(buffer, 0, limit(cursor, buffer.length))) > 0; ) {
+            var chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) cursor.position += channel.write(chunk, cursor.position);
+        }
+        return true;
+    }
+
+    private static int limit(Cursor cursor, int length) {
+        if (!cursor.ranged || cursor.end == UNKNOWN) return length;
+        return (int) Math.min(length, cursor.end + 1 - cursor.position);
+    }
+
+    /**
+     * Reads every entry and checks its CRC-32, so a body spliced from different archives or
+     * corrupted in transit is rejected and not only a broken central directory.
+     */
+    private static void verify(Path archive) throws IOException {
+        try (var zip = new ZipFile(archive.toFile())) {
+            var entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+                try (var input = new CheckedInputStream(zip.getInputStream(entry), new CRC32())) {
+                    input.transferTo(OutputStream.nullOutputStream());
+                    if (entry.getCrc() != -1 && input.getChecksum().getValue() != entry.getCrc())
+                        throw new ZipException("CRC-32 mismatch in entry " + entry.getName());
+                }
+            }
+        } catch (ZipException exception) {
+            throw new ZipException("Downloaded archive %s is not a valid zip file: %s".formatted(archive, exception.getMessage()));
+        }
+    }
+
+    /**
+     * The archive answered a request with a different version than the one being downloaded.
+     */
+    private static final class ArchiveChangedException extends IOException {
+        private ArchiveChangedException(URI location) {
+            super("Archive at %s changed during the download".formatted(location));
+        }
+    }
+
+    private static final class Cursor {
+        private final long start;
+        private final long end;
+        private URI location;
+        private String validator;
+        private long position;
+        private long total = UNKNOWN;
+        private boolean ranged;
+
+        private Cursor(URI location, long start, long end, String validator) {
+            this.location = location;
+            this.start = start;
+            this.end = end;
+            this.validator = validator;
+            this.position = start;
+        }
+
+        private boolean complete() {
+            if (ranged && end != UNKNOWN) return position > end || total != UNKNOWN && position >= total;
+            return total == UNKNOWN || position >= total;
+        }
+    }
+
+    record Settings(int maxRetries, long chunkSize, int parallelism, Duration backoff) {
+        static Settings of(ReadableKeyedConfiguration configuration) {
+            var maxRetries = new int[]{5};
+            var backoff = new long[]{250};
+            var chunkSize = new long[]{8L << 20};
+            var parallelism = new int[]{1};
+            configuration.hasInteger("github.download.max-retries", value -> maxRetries[0] = value);
+            configuration.hasLong("github.download.chunk-size", value -> chunkSize[0] = value);
+            configuration.hasInteger("github.download.parallelism", value -> parallelism[0] = value);
+            configuration.hasLong("github.download.backoff", value -> backoff[0] = value);
+            return new Settings(Math.max(0, maxRetries[0]), Math.max(64 * 1024, chunkSize[0]), Math.max(1, parallelism[0]),
+                    Duration.ofMillis(Math.max(1, backoff[0])));
+        }
+    }
+}
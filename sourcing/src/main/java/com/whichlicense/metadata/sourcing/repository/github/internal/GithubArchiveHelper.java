@@ -8,45 +8,273 @@ package com.whichlicense.metadata.sourcing.repository.github.internal;
 
 import com.whichlicense.configuration.ReadableKeyedConfiguration;
 import com.whichlicense.metadata.sourcing.internal.ArchiveHelper;
-import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiForbiddenException;
-import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubApiUnauthorizedException;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.logging.Logger;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-
 public class GithubArchiveHelper {
+    private static final String ZIPBALL = "zipball.zip";
+    private static final SingleFlight<String, Path> FLIGHTS = new SingleFlight<>();
+
+    public static Path resolveRoot(String username, String repository, String sha, URL url, ReadableKeyedConfiguration configuration) {
+        var mode = ArchiveMode.of(configuration);
+        if (mode == ArchiveMode.ZIPFS) return mount(username, repository, sha, url, configuration);
+        var filter = filter(mode, configuration);
+        var key = filter == null ? sha : sha + "-" + filter.fingerprint();
+
+        try {
+            return FLIGHTS.execute("%s/%s@%s:%s".formatted(username, repository, key, mode),
+                    () -> resolve(username, repository, sha, configuration, mode, key, () -> switch (mode) {
+                        case STAGED -> ArchiveFormat.of(configuration) == ArchiveFormat.TARBALL
+                                ? tarball(url, configuration, null) : staged(url, configuration);
+                        case STREAMING -> streaming(url, configuration, filter);
+                        case SPARSE -> sparse(username, repository, sha, url, configuration, filter);
+                        case ZIPFS -> throw new IllegalStateException();
+                    }));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return what besides the commit determines the resolved tree: the archive mode, the
+     * archive format and the fingerprint of the entry filter
+     */
+    public static String variant(ReadableKeyedConfiguration configuration) {
+        var mode = ArchiveMode.of(configuration);
+        var filter = filter(mode, configuration);
+        var variant = "%s-%s".formatted(mode, ArchiveFormat.of(configuration).path()).toLowerCase(Locale.ROOT);
+        return filter == null ? variant : variant + "-" + filter.fingerprint();
+    }
+
+    /**
+     * Exports the tree of the commit from a local mirror. The export shares the archive cache
+     * entries of downloads, so the mirror and codeload serve each other's cached trees. In
+     * {@link ArchiveMode#ZIPFS} mode the tree is extracted in full instead of being mounted.
+     */
+    public static Path exportRoot(String username, String repository, String sha, GitHubMirror mirror,
+                                  ReadableKeyedConfiguration configuration) {
+        var mode = ArchiveMode.of(configuration);
+        var filter = filter(mode, configuration);
+        var key = filter == null ? sha : sha + "-" + filter.fingerprint();
+
+        try {
+            return FLIGHTS.execute("%s/%s@%s:%s".formatted(username, repository, key, "mirror"),
+                    () -> resolve(username, repository, sha, configuration, mode, key, () -> {
+                        var cache = GithubArchiveCache.of(configuration);
+                        var tempDir = scratch(cache);
+                        var writer = cache == null ? ArchiveEntryWriter.FILES : cache.writer();
+                        if (mirror.export(sha, tempDir, filter, writer) instanceof Path root) {
+                            return new Extraction(root, tempDir, -1, 0);
+                        }
+                        GithubArchiveCache.deleteTree(tempDir);
+                        return null;
+                    }));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Path resolve(String username, String repository, String sha, ReadableKeyedConfiguration configuration,
+                                ArchiveMode mode, String key, SingleFlight.Call<Extraction> extract) throws IOException {
+        var cache = GithubArchiveCache.of(configuration);
+        if (cache != null) {
+            var cached = cache.lookup(username, repository, key);
+            GitHubTelemetry.metrics().cache("archive", cached != null);
+            if (cached != null) return cached;
+        }
+        var event = new GitHubArchiveEvent();
+        var observed = GitHubTelemetry.observed(event);
+        var started = observed ? System.nanoTime() : 0;
+        event.begin();
+        var extraction = extract.call();
+        if (extraction == null) return null;
+        if (observed) GitHubTelemetry.archive(event, username, repository, sha, mode,
+                extraction.bytes(), extraction.extraction(), started);
+        if (cache == null) return extraction.root();
+        var stored = cache.store(username, repository, key, extraction.root());
+        GithubArchiveCache.deleteTree(extraction.scratch());
+        return stored;
+    }
+
     public static Path resolveRoot(URL url, ReadableKeyedConfiguration configuration) {
-        Objects.requireNonNull(url);
         try {
-            var fileName = url.getFile().lastIndexOf("/") + 1;
-            var tempDir = Files.createTempDirectory("whichlicense-archive-");
-            var tempArchiveFile = tempDir.resolve(url.getFile().substring(fileName));
-
-            var connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("X-GitHub-Api-Version", "2022-11-28");
-            configuration.hasString("github.token", token ->
-                    connection.setRequestProperty("Authorization", "token " + token));
-            connection.setRequestProperty("User-Agent", "whichlicense");
-
-            var code = connection.getResponseCode();
-            if (code == 401) throw new GitHubApiUnauthorizedException();
-            if (code == 403) throw new GitHubApiForbiddenException();
-            if (code != 200) return null;
-
-            Files.copy(connection.getInputStream(), tempArchiveFile, REPLACE_EXISTING);
+            return staged(url, configuration) instanceof Extraction extraction ? extraction.root() : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Extraction staged(URL url, ReadableKeyedConfiguration configuration) throws IOException {
+        Objects.requireNonNull(url);
+        var fileName = url.getFile().lastIndexOf("/") + 1;
+        var tempDir = Files.createTempDirectory("whichlicense-archive-");
+        var tempArchiveFile = tempDir.resolve(url.getFile().substring(fileName));
+
+        if (!fetch(url, tempArchiveFile, configuration)) return null;
+        Logger.getLogger("whichlicense.sourcing.archive")
+                .finest("Archive input source temporarily downloaded to: " + tempArchiveFile);
+        var extracting = System.nanoTime();
+        var root = ArchiveHelper.resolveRoot(tempArchiveFile);
+        return new Extraction(root, tempDir, Files.size(tempArchiveFile), System.nanoTime() - extracting);
+    }
+
+    private static Extraction streaming(URL url, ReadableKeyedConfiguration configuration, ArchiveFilter filter) throws IOException {
+        Objects.requireNonNull(url);
+        if (ArchiveFormat.of(configuration) == ArchiveFormat.TARBALL) return tarball(url, configuration, filter);
+        var cache = GithubArchiveCache.of(configuration);
+        var tempDir = scratch(cache);
+        var writer = cache == null ? ArchiveEntryWriter.FILES : cache.writer();
+        var root = download(url, configuration, response -> {
+            Logger.getLogger("whichlicense.sourcing.archive")
+                    .finest("Archive input source streamed into: " + tempDir);
+            return GithubZipStreamExtractor.extract(response.body(), tempDir, filter, writer);
+        });
+        if (root != null) return new Extraction(root, tempDir, -1, 0);
+        GithubArchiveCache.deleteTree(tempDir);
+        return null;
+    }
+
+    /**
+     * Streams a tarball into the extraction directory. A tarball can be extracted as it arrives
+     * in every mode, so the staged mode streams it as well.
+     */
+    private static Extraction tarball(URL url, ReadableKeyedConfiguration configuration, ArchiveFilter filter) throws IOException {
+        Objects.requireNonNull(url);
+        var parallelism = new int[]{Runtime.getRuntime().availableProcessors()};
+        configuration.hasInteger("github.archive.tar.parallelism", value -> parallelism[0] = value);
+        var cache = GithubArchiveCache.of(configuration);
+        var tempDir = scratch(cache);
+        var writer = cache == null ? ArchiveEntryWriter.FILES : cache.writer();
+        var root = download(url, configuration, response -> {
             Logger.getLogger("whichlicense.sourcing.archive")
-                    .finest("Archive input source temporarily downloaded to: " + tempArchiveFile);
-            return ArchiveHelper.resolveRoot(tempArchiveFile);
+                    .finest("Archive input source streamed into: " + tempDir);
+            return GithubTarStreamExtractor.extract(response.body(), tempDir, filter, parallelism[0], writer);
+        });
+        if (root != null) return new Extraction(root, tempDir, -1, 0);
+        GithubArchiveCache.deleteTree(tempDir);
+        return null;
+    }
+
+    /**
+     * Opens a zip {@link FileSystem} over the downloaded zipball instead of extracting it. The
+     * archive is unlinked right after opening unless it lives in the archive cache, so nothing
+     * remains on disk once the returned path's file system is closed.
+     */
+    private static Path mount(String username, String repository, String sha, URL url,
+                              ReadableKeyedConfiguration configuration) {
+        var key = sha + "-zip";
+        var cache = GithubArchiveCache.of(configuration);
+        Path scratch = null;
+        try {
+            Path archive;
+            var cached = cache == null ? null : cache.lookup(username, repository, key);
+            if (cache != null) GitHubTelemetry.metrics().cache("archive", cached != null);
+            if (cached != null) {
+                archive = cached.resolve(ZIPBALL);
+            } else {
+                var event = new GitHubArchiveEvent();
+                var observed = GitHubTelemetry.observed(event);
+                var started = observed ? System.nanoTime() : 0;
+                event.begin();
+                scratch = Files.createTempDirectory("whichlicense-archive-");
+                var staged = Files.createDirectory(scratch.resolve(sha));
+                if (!fetch(url, staged.resolve(ZIPBALL), configuration)) return null;
+                if (observed) GitHubTelemetry.archive(event, username, repository, sha, ArchiveMode.ZIPFS,
+                        Files.size(staged.resolve(ZIPBALL)), 0, started);
+                archive = cache != null
+                        ? cache.store(username, repository, key, staged).resolve(ZIPBALL)
+                        : staged.resolve(ZIPBALL);
+            }
+
+            var fileSystem = FileSystems.newFileSystem(archive);
+            try {
+                var top = fileSystem.getPath("/");
+                try (var children = Files.list(top)) {
+                    return children.filter(Files::isDirectory).findFirst().orElse(top);
+                }
+            } catch (IOException | RuntimeException exception) {
+                fileSystem.close();
+                throw exception;
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            // the opened file system keeps an unlinked zipball readable, a failed fetch leaves a partial one
+            if (scratch != null) {
+                try {
+                    GithubArchiveCache.deleteTree(scratch);
+                } catch (IOException exception) {
+                    // registered parents first, the hook deletes in reverse order
+                    try (var paths = Files.walk(scratch)) {
+                        paths.forEach(path -> path.toFile().deleteOnExit());
+                    } catch (IOException | UncheckedIOException ignored) {
+                        scratch.toFile().deleteOnExit();
+                    }
+                }
+            }
+        }
+    }
+
+    private static Extraction sparse(String username, String repository, String sha, URL url,
+                                     ReadableKeyedConfiguration configuration, ArchiveFilter filter) throws IOException {
+        var tempDir = Files.createTempDirectory("whichlicense-archive-");
+        try {
+            if (GithubSparseFetcher.fetch(username, repository, sha, tempDir, filter, configuration) instanceof Path root) {
+                return new Extraction(root, tempDir, -1, 0);
+            }
+        } catch (IOException | RuntimeException exception) {
+            GithubArchiveCache.deleteTree(tempDir);
+            throw exception;
         }
+        Logger.getLogger("whichlicense.sourcing.archive")
+                .finest("Tree of %s/%s@%s unavailable or truncated, streaming archive instead".formatted(username, repository, sha));
+        GithubArchiveCache.deleteTree(tempDir);
+        return streaming(url, configuration, filter);
+    }
+
+    /**
+     * @return a directory to extract into, which a deduplicating cache places next to its blobs
+     */
+    private static Path scratch(GithubArchiveCache cache) throws IOException {
+        return cache == null ? Files.createTempDirectory("whichlicense-archive-") : cache.scratch();
+    }
+
+    private static ArchiveFilter filter(ArchiveMode mode, ReadableKeyedConfiguration configuration) {
+        return switch (mode) {
+            case STAGED, ZIPFS -> null;
+            case STREAMING -> ArchiveFilter.of(configuration);
+            case SPARSE -> GithubSparseFetcher.filter(configuration);
+        };
+    }
+
+    private static boolean fetch(URL url, Path target, ReadableKeyedConfiguration configuration) throws IOException {
+        try {
+            return GithubArchiveDownloader.download(url.toURI(), target, configuration);
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <T> T download(URL url, ReadableKeyedConfiguration configuration,
+                                  GitHubHttpTransport.ResponseHandler<T> handler) throws IOException {
+        try {
+            return GitHubHttpTransport.shared(configuration).get(url.toURI(), null, configuration, response ->
+                    response.statusCode() == 200 ? handler.handle(response) : null);
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private record Extraction(Path root, Path scratch, long bytes, long extraction) {
     }
 }
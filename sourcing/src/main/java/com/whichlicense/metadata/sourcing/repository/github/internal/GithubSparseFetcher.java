@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.configuration.ReadableKeyedConfiguration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Materializes only the metadata relevant files of a commit. The recursive tree of the
+ * commit is listed through the Git Trees API and every blob accepted by the filter is
+ * downloaded in parallel from raw.githubusercontent.com, which costs no API quota.
+ */
+public final class GithubSparseFetcher {
+    public static final List<String> DEFAULT_INCLUDES = List.of("LICENSE*", "LICENCE*", "COPYING*", "NOTICE*",
+            "UNLICENSE*", "AUTHORS*", "package.json", "pom.xml", "build.gradle*", "settings.gradle*", "Cargo.toml",
+            "go.mod", "pyproject.toml", "setup.py", "setup.cfg", "composer.json", "*.gemspec", "*.nuspec", "*.csproj");
+    private static final String TREE = "%s/repos/%s/%s/git/trees/%s?recursive=1";
+    private static final String RAW = "%s/%s/%s/%s/%s";
+
+    private GithubSparseFetcher() {
+    }
+
+    public static ArchiveFilter filter(ReadableKeyedConfiguration configuration) {
+        return ArchiveFilter.of(configuration) instanceof ArchiveFilter filter ? filter : ArchiveFilter.of(DEFAULT_INCLUDES);
+    }
+
+    /**
+     * Files that are missing from raw.githubusercontent.com are skipped; any other failed
+     * download fails the fetch, so an incomplete tree is never mistaken for the commit.
+     *
+     * @return the materialized root, or {@code null} if the tree is unknown or was truncated by GitHub
+     */
+    public static Path fetch(String username, String repository, String sha, Path target, ArchiveFilter filter,
+                             ReadableKeyedConfiguration configuration) throws IOException {
+        var transport = GitHubHttpTransport.shared(configuration);
+        var response = transport.api(URI.create(TREE.formatted(GitHubEndpoints.api(configuration), username, repository, sha)), configuration);
+        if (response.statusCode() != 200) return null;
+        var raw = GitHubEndpoints.raw(configuration);
+        Tree tree = GitHubJson.TREE.readValue(response.content());
+        if (tree.truncated()) return null;
+
+        var paths = new ArrayList<String>();
+        for (var entry : tree.tree()) {
+            if ("blob".equals(entry.type()) && entry.path() != null && filter.includes(entry.path())) paths.add(entry.path());
+        }
+
+        var root = target.toAbsolutePath().normalize()
+                .resolve("%s-%s-%s".formatted(username, repository, sha.substring(0, Math.min(7, sha.length()))));
+        Files.createDirectories(root);
+        Logger.getLogger("whichlicense.sourcing.archive")
+                .finest("Fetching %d of %d files of %s/%s@%s".formatted(paths.size(), tree.tree().size(), username, repository, sha));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var downloads = new ArrayList<Future<?>>();
+            for (var path : paths) {
+                var destination = root.resolve(path).normalize();
+                if (!destination.startsWith(root)) continue;
+                var location = URI.create(RAW.formatted(raw, username, repository, sha, encode(path)));
+                downloads.add(executor.submit(() -> transport.get(location, null, configuration, file -> {
+                    if (file.statusCode() == 404) return null;
+                    if (file.statusCode() != 200) throw new IOException("Fetching %s failed with status %d"
+                            .formatted(location, file.statusCode()));
+                    Files.createDirectories(destination.getParent());
+                    return Files.copy(file.body(), destination, REPLACE_EXISTING);
+                })));
+            }
+            for (var download : downloads) download.get();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException cause) throw cause;
+            if (exception.getCause() instanceof UncheckedIOException cause) throw cause.getCause();
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException(exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching files of %s/%s@%s".formatted(username, repository, sha), exception);
+        }
+        return root;
+    }
+
+    private static String encode(String path) {
+        return Stream.of(path.split("/")).map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8)
+                .replace("+", "%20")).collect(Collectors.joining("/"));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Extracts a gzip compressed GitHub tarball while it is still being received. A tarball has no
+ * central directory, so every entry is written as soon as it has been inflated. Inflating and
+ * parsing run on the calling thread while the contents of small entries are handed to a pool
+ * of writers, overlapping decompression with disk writes. Understands ustar, pax extended
+ * headers and GNU long names; links are written as files holding their target, which is how
+ * they appear in a zipball.
+ */
+public final class GithubTarStreamExtractor {
+    private static final int BLOCK = 512;
+    private static final int INLINE = 8 << 20;
+    private static final int IN_FLIGHT = 64 << 20;
+
+    private GithubTarStreamExtractor() {
+    }
+
+    public static Path extract(InputStream input, Path target, ArchiveFilter filter, int parallelism) throws IOException {
+        return extract(input, target, filter, parallelism, ArchiveEntryWriter.FILES);
+    }
+
+    public static Path extract(InputStream input, Path target, ArchiveFilter filter, int parallelism,
+                               ArchiveEntryWriter writer) throws IOException {
+        var directory = target.toAbsolutePath().normalize();
+        var writers = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        try {
+            var root = extract(new GZIPInputStream(input, 64 * 1024), directory, filter, writer, writers);
+            if (root == null) return null;
+            return Files.createDirectories(directory.resolve(root));
+        } finally {
+            if (writers != null) writers.shutdownNow();
+        }
+    }
+
+    private static String extract(InputStream tar, Path directory, ArchiveFilter filter, ArchiveEntryWriter writer,
+                                  ExecutorService writers) throws IOException {
+        var pending = new ArrayList<Future<?>>();
+        var budget = new Semaphore(IN_FLIGHT);
+        var header = new byte[BLOCK];
+        Map<String, String> extended = Map.of();
+        String longName = null;
+        String longLink = null;
+        String root = null;
+        try (tar) {
+            while (tar.readNBytes(header, 0, BLOCK) == BLOCK && !zero(header)) {
+                verify(header);
+                var type = header[156];
+                var size = extended.containsKey("size") ? Long.parseLong(extended.get("size")) : size(header);
+                switch (type) {
+                    case 'x' -> {
+                        extended = pax(content(tar, size));
+                        continue;
+                    }
+                    case 'L' -> {
+                        longName = string(content(tar, size), 0, (int) size);
+                        continue;
+                    }
+                    case 'K' -> {
+                        longLink = string(content(tar, size), 0, (int) size);
+                        continue;
+                    }
+                    case 'g' -> {
+                        skip(tar, padded(size));
+                        continue;
+                    }
+                    default -> {
+                    }
+                }
+
+                var name = extended.getOrDefault("path", longName != null ? longName : name(header));
+                var link = extended.getOrDefault("linkpath", longLink != null ? longLink : string(header, 157, 100));
+                extended = Map.of();
+                longName = null;
+                longLink = null;
+
+                var separator = name.indexOf('/');
+                if (root == null) root = separator < 0 ? name : name.substring(0, separator);
+                var relative = separator < 0 ? "" : name.substring(separator + 1);
+                var destination = directory.resolve(name).normalize();
+                if (!destination.startsWith(directory))
+                    throw new IOException("Archive entry escapes the extraction directory: " + name);
+
+                switch (type) {
+                    case '5' -> {
+                        if (filter == null) Files.createDirectories(destination);
+                        skip(tar, padded(size));
+                    }
+                    case '0', '7', 0, '2' -> {
+                        if (name.endsWith("/") || (filter != null && !filter.includes(relative))) {
+                            skip(tar, padded(size));
+                            continue;
+                        }
+                        Files.createDirectories(destination.getParent());
+                        if (type == '2') {
+                            Files.writeString(destination, link);
+                            skip(tar, padded(size));
+                        } else if (writers == null || size > INLINE) {
+                            try (var output = writer.open(destination)) {
+                                copy(tar, output, size);
+                            }
+                            skip(tar, padded(size) - size);
+                        } else {
+                            var data = content(tar, size);
+                            acquire(budget, data.length);
+                            pending.add(writers.submit(() -> {
+                                try {
+                                    writer.write(destination, data);
+                                } catch (IOException exception) {
+                                    throw new UncheckedIOException(exception);
+                                } finally {
+                                    budget.release(data.length);
+                                }
+                            }));
+                        }
+                    }
+                    default -> skip(tar, padded(size));
+                }
+            }
+            tar.transferTo(OutputStream.nullOutputStream());
+        }
+        await(pending);
+        return root;
+    }
+
+    private static byte[] content(InputStream tar, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - BLOCK) throw new IOException("Archive entry too large: " + size);
+        var data = tar.readNBytes((int) size);
+        if (data.length != size) throw new EOFException("Truncated archive entry");
+        skip(tar, padded(size) - size);
+        return data;
+    }
+
+    private static void copy(InputStream tar, OutputStream output, long size) throws IOException {
+        var buffer = new byte[64 * 1024];
+        for (var remaining = size; remaining > 0; ) {
+            var read = tar.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) throw new EOFException("Truncated archive entry");
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static void skip(InputStream tar, long count) throws IOException {
+        if (count > 0) tar.skipNBytes(count);
+    }
+
+    private static long padded(long size) {
+        return (size + BLOCK - 1) / BLOCK * BLOCK;
+    }
+
+    private static boolean zero(byte[] header) {
+        for (var value : header) if (value != 0) return false;
+        return true;
+    }
+
+    private static void verify(byte[] header) throws IOException {
+        var sum = 0L;
+        for (var i = 0; i < BLOCK; i++) sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        if (sum != octal(header, 148, 8)) throw new IOException("Corrupt tar header checksum");
+    }
+
+    private static String name(byte[] header) {
+        var name = string(header, 0, 100);
+        var prefix = string(header, 257, 5).equals("ustar") ? string(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static long size(byte[] header) {
+        if ((header[124] & 0x80) == 0) return octal(header, 124, 12);
+        var size = 0L;
+        for (var i = 125; i < 136; i++) size = size << 8 | header[i] & 0xff;
+        return size;
+    }
+
+    private static long octal(byte[] header, int offset, int length) {
+        var value = 0L;
+        for (var i = offset; i < offset + length; i++) {
+            if (header[i] >= '0' && header[i] <= '7') value = value * 8 + header[i] - '0';
+            else if (header[i] == 0 || (header[i] == ' ' && value > 0)) break;
+        }
+        return value;
+    }
+
+    private static String string(byte[] bytes, int offset, int length) {
+        var end = offset;
+        while (end < offset + length && bytes[end] != 0) end++;
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the {@code "<length> <key>=<value>\n"} records of a pax extended header.
+     */
+    private static Map<String, String> pax(byte[] records) throws IOException {
+        var values = new HashMap<String, String>();
+        for (var position = 0; position < records.length && records[position] != 0; ) {
+            var space = position;
+            while (space < records.length && records[space] != ' ') space++;
+            var length = Integer.parseInt(new String(records, position, space - position, StandardCharsets.US_ASCII));
+            if (length <= 0 || position + length > records.length) throw new IOException("Corrupt pax header");
+            var record = new String(records, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            var equals = record.indexOf('=');
+            if (equals > 0) values.put(record.substring(0, equals), record.substring(equals + 1));
+            position += length;
+        }
+        return values;
+    }
+
+    private static void acquire(Semaphore budget, int permits) throws IOException {
+        try {
+            budget.acquire(permits);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void await(List<Future<?>> pending) throws IOException {
+        try {
+            for (var write : pending) write.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof UncheckedIOException cause) throw cause.getCause();
+            throw new IOException(exception.getCause());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts a GitHub zipball entry by entry while it is still being received. All entries
+ * of a zipball live below a single root directory, which is returned once the stream ends.
+ */
+public final class GithubZipStreamExtractor {
+    private GithubZipStreamExtractor() {
+    }
+
+    public static Path extract(InputStream input, Path target, ArchiveFilter filter) throws IOException {
+        return extract(input, target, filter, ArchiveEntryWriter.FILES);
+    }
+
+    public static Path extract(InputStream input, Path target, ArchiveFilter filter, ArchiveEntryWriter writer) throws IOException {
+        var directory = target.toAbsolutePath().normalize();
+        String root = null;
+        try (var zip = new ZipInputStream(input)) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                var name = entry.getName();
+                var separator = name.indexOf('/');
+                if (root == null) root = separator < 0 ? name : name.substring(0, separator);
+                var relative = separator < 0 ? "" : name.substring(separator + 1);
+                var destination = directory.resolve(name).normalize();
+                if (!destination.startsWith(directory))
+                    throw new ZipException("Archive entry escapes the extraction directory: " + name);
+
+                if (entry.isDirectory()) {
+                    if (filter == null) Files.createDirectories(destination);
+                } else if (filter == null || filter.includes(relative)) {
+                    Files.createDirectories(destination.getParent());
+                    try (var output = writer.open(destination)) {
+                        zip.transferTo(output);
+                    }
+                }
+            }
+        }
+        if (root == null) return null;
+        return Files.createDirectories(directory.resolve(root));
+    }
+}
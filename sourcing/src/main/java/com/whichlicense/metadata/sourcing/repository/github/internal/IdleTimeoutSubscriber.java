@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A response body read as an {@link InputStream} that fails once a reader has been blocked for
+ * longer than the idle timeout without any data arriving. The request timeout of the
+ * {@link java.net.http.HttpClient} only covers the time until the headers are received; this
+ * bounds a body that stalls afterwards. The exchange is cancelled and the blocked read throws
+ * an {@link HttpTimeoutException}. Time the caller spends between reads is not counted.
+ */
+final class IdleTimeoutSubscriber implements BodySubscriber<InputStream> {
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(task ->
+            Thread.ofPlatform().name("github-http-idle-watchdog").daemon().unstarted(task));
+    private final BodySubscriber<InputStream> delegate = BodySubscribers.ofInputStream();
+    private final long idle;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile long active = System.nanoTime();
+    private volatile Flow.Subscription subscription;
+
+    IdleTimeoutSubscriber(long idleNanos) {
+        this.idle = idleNanos;
+    }
+
+    @Override
+    public CompletionStage<InputStream> getBody() {
+        return delegate.getBody().thenApply(body -> new FilterInputStream(body) {
+            @Override
+            public int read() throws IOException {
+                enter();
+                try {
+                    return super.read();
+                } catch (IOException exception) {
+                    throw unwrapped(exception);
+                } finally {
+                    exit();
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                enter();
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException exception) {
+                    throw unwrapped(exception);
+                } finally {
+                    exit();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                done.set(true);
+                super.close();
+            }
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        delegate.onSubscribe(subscription);
+        watch(idle);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        active = System.nanoTime();
+        delegate.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (done.compareAndSet(false, true)) delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (done.compareAndSet(false, true)) delegate.onComplete();
+    }
+
+    /**
+     * The body stream reports a failed subscription as closed, with the idle timeout as its cause.
+     */
+    private static IOException unwrapped(IOException exception) {
+        return exception.getCause() instanceof HttpTimeoutException timeout ? timeout : exception;
+    }
+
+    private void enter() {
+        readers.incrementAndGet();
+        active = System.nanoTime();
+    }
+
+    private void exit() {
+        active = System.nanoTime();
+        readers.decrementAndGet();
+    }
+
+    private void watch(long delay) {
+        WATCHDOG.schedule(this::check, delay, NANOSECONDS);
+    }
+
+    private void check() {
+        if (done.get()) return;
+        var waited = System.nanoTime() - active;
+        if (readers.get() == 0 || waited < idle) {
+            watch(Math.max(idle - waited, idle / 4));
+            return;
+        }
+        if (!done.compareAndSet(false, true)) return;
+        subscription.cancel();
+        delegate.onError(new HttpTimeoutException("No response data received for %d ms"
+                .formatted(NANOSECONDS.toMillis(waited))));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.util.Arrays;
+
+/**
+ * The latest latencies of an endpoint, from which the hedging delay is derived.
+ */
+final class LatencyWindow {
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @return the percentile in nanoseconds, or {@code -1} with fewer than {@code minimum} samples
+     */
+    synchronized long percentile(double percentile, int minimum) {
+        if (count < Math.max(1, minimum)) return -1;
+        var sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses concurrent calls with the same key into a single execution. Callers arriving
+ * while a call is in flight wait for and share its outcome, including its failure. The
+ * entry is removed as soon as the call completes, so later callers execute again.
+ */
+public final class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public V execute(K key, Call<V> call) throws IOException {
+        var existing = inFlight.get(key);
+        if (existing != null) return await(existing);
+
+        var future = new CompletableFuture<V>();
+        existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) return await(existing);
+        try {
+            var value = call.call();
+            future.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error exception) {
+            future.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an in-flight request");
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException cause) throw cause;
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            if (exception.getCause() instanceof Error cause) throw cause;
+            throw new IOException(exception.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import java.util.List;
+
+public record Tree(String sha, List<Entry> tree, boolean truncated) {
+    public Tree {
+        tree = tree == null ? List.of() : tree;
+    }
+
+    public record Entry(String path, String type, long size) {
+    }
+}
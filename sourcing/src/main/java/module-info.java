@@ -6,10 +6,14 @@
  */
 
 import com.whichlicense.metadata.sourcing.MetadataSourceResolverProvider;
+import com.whichlicense.metadata.sourcing.repository.github.GitHubMetrics;
 import com.whichlicense.metadata.sourcing.repository.github.GitHubMetadataRepositorySourceResolverProvider;
 
 module whichlicense.sourcing.github {
     requires java.logging;
+    requires java.net.http;
+    requires jdk.jfr;
+    requires com.fasterxml.jackson.core;
     requires com.fasterxml.jackson.databind;
     requires com.fasterxml.jackson.annotation;
     requires whichlicense.configuration;
@@ -17,5 +21,6 @@ module whichlicense.sourcing.github {
     exports com.whichlicense.metadata.sourcing.repository.github;
     exports com.whichlicense.metadata.sourcing.repository.github.exceptions;
     opens com.whichlicense.metadata.sourcing.repository.github.internal to com.fasterxml.jackson.databind;
+    uses GitHubMetrics;
     provides MetadataSourceResolverProvider with GitHubMetadataRepositorySourceResolverProvider;
 }
@@ -8,66 +8,77 @@ package com.whichlicense.metadata.sourcing.repository.github;
 
 import com.whichlicense.configuration.KeyedConfiguration;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
-public record ConfigurationMock() implements KeyedConfiguration {
+public record ConfigurationMock(Map<String, Object> values) implements KeyedConfiguration {
+    public ConfigurationMock() {
+        this(new HashMap<>());
+    }
+
+    public ConfigurationMock with(String key, Object value) {
+        values.put(key, value);
+        return this;
+    }
+
     @Override
     public boolean getBoolean(String key) {
-        return false;
+        return values.get(key) instanceof Boolean value && value;
     }
 
     @Override
     public void hasBoolean(String key, Consumer<Boolean> consumer) {
-
+        if (values.get(key) instanceof Boolean value) consumer.accept(value);
     }
 
     @Override
     public int getInteger(String key) {
-        return 0;
+        return values.get(key) instanceof Integer value ? value : 0;
     }
 
     @Override
     public void hasInteger(String key, Consumer<Integer> consumer) {
-
+        if (values.get(key) instanceof Integer value) consumer.accept(value);
     }
 
     @Override
     public long getLong(String key) {
-        return 0;
+        return values.get(key) instanceof Long value ? value : 0;
     }
 
     @Override
     public void hasLong(String key, Consumer<Long> consumer) {
-
+        if (values.get(key) instanceof Long value) consumer.accept(value);
     }
 
     @Override
     public String getString(String key) {
-        return null;
+        return values.get(key) instanceof String value ? value : null;
     }
 
     @Override
     public void hasString(String key, Consumer<String> consumer) {
-
+        if (values.get(key) instanceof String value) consumer.accept(value);
     }
 
     @Override
     public void setBoolean(String key, boolean value) {
-
+        values.put(key, value);
     }
 
     @Override
     public void setInteger(String key, int value) {
-
+        values.put(key, value);
     }
 
     @Override
     public void setLong(String key, long value) {
-
+        values.put(key, value);
     }
 
     @Override
     public void setString(String key, String value) {
-
+        values.put(key, value);
     }
 }
@@ -6,16 +6,28 @@
  */
 package com.whichlicense.metadata.sourcing.repository.github;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.whichlicense.configuration.KeyedConfiguration;
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubJson;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class GitHubMetadataRepositorySourceResolverTest {
     static final GitHubMetadataRepositorySourceResolver RESOLVER = new GitHubMetadataRepositorySourceResolver(null);
@@ -38,12 +50,71 @@ class GitHubMetadataRepositorySourceResolverTest {
 
     @Test
     void givenGitHubMetadataRepositorySourceResolverAndValidArgumentsWhenCallingMetadataThenTheMetadataShouldBeReturned() {
-        System.out.println(RESOLVER.lookup("whichlicense", "core-libs", new ObjectMapper(), CONFIG));
-        assertThat(RESOLVER.lookup("whichlicense", "core-libs", new ObjectMapper(), CONFIG)).isNotNull();
+        System.out.println(RESOLVER.lookup("whichlicense", "core-libs", CONFIG));
+        assertThat(RESOLVER.lookup("whichlicense", "core-libs", CONFIG)).isNotNull();
     }
 
     @Test
     void givenGitHubMetadataRepositorySourceResolverAndValidArgumentsWhenCallingMetadataThenNullShouldBeReturned() {
-        assertThat(RESOLVER.lookup("whichlicense", "unknown", new ObjectMapper(), CONFIG)).isNull();
+        assertThat(RESOLVER.lookup("whichlicense", "unknown", CONFIG)).isNull();
+    }
+
+    @Test
+    void givenDuplicateUnhandledUrlsWhenCallingHandleAllThenOneUnresolvedResultShouldBeReturned() throws MalformedURLException {
+        var url = new URL("https://gitlab.com/whichlicense/core-libs");
+        assertThat(RESOLVER.handleAll(List.of(url, new URL(url.toExternalForm())), CONFIG))
+                .singleElement().satisfies(resolution -> {
+                    assertThat(resolution.url()).hasToString(url.toExternalForm());
+                    assertThat(resolution.resolved()).isFalse();
+                    assertThat(resolution.failure()).isNull();
+                });
+    }
+
+    @Test
+    void givenGitRefsPageWhenCallingCollectTagsThenEveryTagShouldBeReportedWithItsTarget() throws IOException {
+        var page = """
+                [{"ref": "refs/tags/v1.0.0", "object": {"sha": "aaa", "type": "commit"}},
+                 {"ref": "refs/tags/v1.1.0", "node_id": "x", "object": {"type": "commit", "sha": "bbb"}},
+                 {"ref": "refs/tags/latest", "object": {"sha": "bbb", "type": "commit", "url": "https://api.github.com"}},
+                 {"ref": "refs/tags/status", "object": {"sha": "bbb", "type": "commit"}}]
+                """;
+        var tags = new HashMap<String, Set<String>>();
+        try (var parser = GitHubJson.MAPPER.createParser(page)) {
+            RESOLVER.collectTags(parser, (target, tag) -> tags.computeIfAbsent(target, ignored -> new HashSet<>()).add(tag));
+        }
+        assertThat(tags).containsOnly(entry("aaa", Set.of("v1.0.0")), entry("bbb", Set.of("v1.1.0", "latest")));
+    }
+
+    @Test
+    void givenMirrorWhoseExportFailsWhenCallingHandleThenTheApiShouldBeAskedInstead(@TempDir Path directory) throws IOException, InterruptedException {
+        var work = Files.createDirectory(directory.resolve("work"));
+        assumeTrue(git(work, "init", "-q", "-b", "main", ".") != null);
+        Files.writeString(work.resolve("LICENSE"), "Apache-2.0");
+        git(work, "add", "LICENSE");
+        git(work, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+        var blob = git(work, "rev-parse", "HEAD:LICENSE");
+        var bare = directory.resolve("mirrors").resolve("whichlicense").resolve("broken.git");
+        git(work, "clone", "-q", "--mirror", ".", bare.toString());
+        // refs still resolve, but git archive can no longer read the tree
+        Files.delete(bare.resolve("objects").resolve(blob.substring(0, 2)).resolve(blob.substring(2)));
+
+        var configuration = new ConfigurationMock()
+                .with("github.mirror.directory", directory.resolve("mirrors").toString())
+                .with("github.api.url", "http://127.0.0.1:1");
+        assertThat(RESOLVER.handle(new URL("https://github.com/whichlicense/broken"), configuration)).isNull();
+    }
+
+    private static String git(Path directory, String... arguments) throws IOException, InterruptedException {
+        var command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(arguments));
+        Process process;
+        try {
+            process = new ProcessBuilder(command).directory(directory.toFile())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException exception) {
+            return null;
+        }
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).strip();
+        return process.waitFor() == 0 ? output : null;
     }
 }
@@ -9,15 +9,23 @@ package com.whichlicense.metadata.sourcing.repository.github;
 import com.whichlicense.metadata.sourcing.MetadataOrigin;
 import com.whichlicense.metadata.sourcing.MetadataOrigin.RawPath;
 import com.whichlicense.testing.nullable.NullSubstituteSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class GitHubMetadataRepositorySourceTest {
@@ -48,4 +56,26 @@ class GitHubMetadataRepositorySourceTest {
         assertThatThrownBy(() -> new GitHubMetadataRepositorySource(username, repository, branch, tags, commit, path, origin))
                 .isExactlyInstanceOf(NullPointerException.class);
     }
+
+    @Test
+    void givenSourceBackedByZipFileSystemWhenCallingCloseThenTheFileSystemShouldBeClosed(@TempDir Path directory) throws IOException {
+        var archive = directory.resolve("zipball.zip");
+        try (var zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("owner-repo-sha/LICENSE"));
+            zip.closeEntry();
+        }
+        var fileSystem = FileSystems.newFileSystem(archive);
+        var source = new GitHubMetadataRepositorySource("username", "repository", "branch", Set.of(), "commit",
+                fileSystem.getPath("/owner-repo-sha"), URL);
+        assertThat(source.path().resolve("LICENSE")).exists();
+        Files.delete(archive);
+        source.close();
+        assertThat(fileSystem.isOpen()).isFalse();
+    }
+
+    @Test
+    void givenSourceOnTheDefaultFileSystemWhenCallingCloseThenThePathShouldBeLeftUntouched(@TempDir Path directory) {
+        new GitHubMetadataRepositorySource("username", "repository", "branch", Set.of(), "commit", directory, URL).close();
+        assertThat(directory).exists();
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.exceptions.GitHubCircuitOpenException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitHubCircuitBreakerTest {
+    @Test
+    void givenConsecutiveFailuresWhenCallingAcquireThenGitHubCircuitOpenExceptionShouldBeThrown() throws GitHubCircuitOpenException {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 3, Duration.ofMinutes(1));
+        for (var i = 0; i < 3; i++) {
+            breaker.record(breaker.acquire(), false);
+        }
+        assertThat(breaker.closed()).isFalse();
+        assertThatThrownBy(breaker::acquire).isExactlyInstanceOf(GitHubCircuitOpenException.class)
+                .hasMessageContaining("api.github.com");
+    }
+
+    @Test
+    void givenInterleavedSuccessWhenRecordingFailuresThenTheCircuitShouldStayClosed() {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 2, Duration.ofMinutes(1));
+        breaker.record(false, false);
+        breaker.record(false, true);
+        breaker.record(false, false);
+        assertThat(breaker.closed()).isTrue();
+        assertThatCode(breaker::acquire).doesNotThrowAnyException();
+    }
+
+    @Test
+    void givenElapsedOpenDurationWhenProbingThenOnlyOneRequestShouldPassAndSuccessShouldClose() throws Exception {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 1, Duration.ofMillis(10));
+        breaker.record(false, false);
+        Thread.sleep(20);
+        assertThat(breaker.acquire()).isTrue();
+        assertThatThrownBy(breaker::acquire).isExactlyInstanceOf(GitHubCircuitOpenException.class);
+        breaker.record(true, true);
+        assertThat(breaker.closed()).isTrue();
+    }
+
+    @Test
+    void givenFailedProbeWhenCallingAcquireThenTheCircuitShouldBeOpenAgain() throws Exception {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 1, Duration.ofMillis(10));
+        breaker.record(false, false);
+        Thread.sleep(20);
+        breaker.record(breaker.acquire(), false);
+        assertThatThrownBy(breaker::acquire).isExactlyInstanceOf(GitHubCircuitOpenException.class);
+    }
+
+    @Test
+    void givenAbandonedProbeWhenCallingAcquireThenTheNextCallShouldBeAllowedToProbe() throws Exception {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 1, Duration.ofMillis(10));
+        breaker.record(false, false);
+        Thread.sleep(20);
+        breaker.record(breaker.acquire(), null);
+        assertThatCode(breaker::acquire).doesNotThrowAnyException();
+    }
+
+    @Test
+    void givenStragglerOutcomeWhileProbingWhenCallingAcquireThenNoSecondProbeShouldPass() throws Exception {
+        var breaker = new GitHubCircuitBreaker("api.github.com", 1, Duration.ofMillis(10));
+        breaker.record(false, false);
+        Thread.sleep(20);
+        var probe = breaker.acquire();
+        breaker.record(false, null);
+        assertThatThrownBy(breaker::acquire).isExactlyInstanceOf(GitHubCircuitOpenException.class);
+        breaker.record(probe, true);
+        assertThat(breaker.closed()).isTrue();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubGraphQL.Head;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubGraphQLTest {
+    static final Coordinates CORE = new Coordinates("whichlicense", "core-libs");
+    static final Coordinates SOURCING = new Coordinates("whichlicense", "sourcing");
+
+    @Test
+    void givenBatchWhenCallingRequestThenEveryRepositoryShouldBeAliasedWithItsOwnVariables() {
+        var request = GitHubGraphQL.request(List.of(CORE, SOURCING));
+        assertThat(request.get("query").toString())
+                .contains("query($o0: String!, $n0: String!, $o1: String!, $n1: String!)")
+                .contains("r0: repository(owner: $o0, name: $n0) { ...head }")
+                .contains("r1: repository(owner: $o1, name: $n1) { ...head }")
+                .contains("fragment head on Repository");
+        assertThat(request.get("variables")).isEqualTo(Map.of("o0", "whichlicense", "n0", "core-libs",
+                "o1", "whichlicense", "n1", "sourcing"));
+    }
+
+    @Test
+    void givenResponseWhenCallingParseThenTheDefaultBranchHeadAndItsTagsShouldBeReturned() throws IOException {
+        var heads = GitHubGraphQL.parse(List.of(CORE), json("""
+                {"data": {"r0": {
+                  "defaultBranchRef": {"name": "main", "target": {"oid": "aaa"}},
+                  "refs": {"nodes": [
+                    {"name": "v1.1.0", "target": {"oid": "aaa"}},
+                    {"name": "latest", "target": {"oid": "aaa"}},
+                    {"name": "v1.0.0", "target": {"oid": "bbb"}}
+                  ], "pageInfo": {"hasNextPage": false}}
+                }}}
+                """));
+        assertThat(heads).isEqualTo(Map.of(CORE, new Head("main", "aaa", Set.of("v1.1.0", "latest"))));
+    }
+
+    @Test
+    void givenMissingRepositoryAndErrorsWhenCallingParseThenOnlyTheResolvedRepositoriesShouldBeReturned() throws IOException {
+        var heads = GitHubGraphQL.parse(List.of(CORE, SOURCING), json("""
+                {"data": {"r0": null, "r1": {
+                  "defaultBranchRef": {"name": "main", "target": {"oid": "ccc"}},
+                  "refs": {"nodes": [], "pageInfo": {"hasNextPage": false}}
+                }},
+                "errors": [{"type": "NOT_FOUND", "path": ["r0"],
+                  "message": "Could not resolve to a Repository with the name 'whichlicense/core-libs'."}]}
+                """));
+        assertThat(heads).isEqualTo(Map.of(SOURCING, new Head("main", "ccc", Set.of())));
+    }
+
+    @Test
+    void givenRepositoryWithoutDefaultBranchWhenCallingParseThenItShouldBeLeftOut() throws IOException {
+        var heads = GitHubGraphQL.parse(List.of(CORE), json("""
+                {"data": {"r0": {"defaultBranchRef": null, "refs": {"nodes": [], "pageInfo": {"hasNextPage": false}}}}}
+                """));
+        assertThat(heads).isEqualTo(Map.of());
+    }
+
+    @Test
+    void givenErrorsWithoutDataWhenCallingParseThenNoHeadsShouldBeReturned() throws IOException {
+        var heads = GitHubGraphQL.parse(List.of(CORE), json("""
+                {"errors": [{"message": "Something went wrong while executing your query."}]}
+                """));
+        assertThat(heads).isEqualTo(Map.of());
+    }
+
+    @Test
+    void givenMoreTagsThanTheFirstPageWhenCallingParseThenTheTagsShouldBeLeftToTheRestLookup() throws IOException {
+        var heads = GitHubGraphQL.parse(List.of(CORE), json("""
+                {"data": {"r0": {
+                  "defaultBranchRef": {"name": "main", "target": {"oid": "aaa"}},
+                  "refs": {"nodes": [{"name": "v2.0.0", "target": {"oid": "ddd"}}], "pageInfo": {"hasNextPage": true}}
+                }}}
+                """));
+        assertThat(heads).isEqualTo(Map.of(CORE, new Head("main", "aaa", null)));
+    }
+
+    private static byte[] json(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.ConfigurationMock;
+import com.whichlicense.metadata.sourcing.repository.github.GitHubRateLimit;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitHubHttpTransportTest {
+    @Test
+    void givenBodyThatStallsAfterTheHeadersWhenReadingItThenTheIdleTimeoutShouldFailTheRead() throws IOException {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // sends the headers and part of the body, then keeps the connection open without sending more
+            Thread.ofVirtual().start(() -> {
+                try (var socket = server.accept()) {
+                    socket.getInputStream().read(new byte[8192]);
+                    socket.getOutputStream().write("""
+                            HTTP/1.1 200 OK\r
+                            Content-Length: 1024\r
+                            \r
+                            partial""".getBytes(StandardCharsets.US_ASCII));
+                    socket.getOutputStream().flush();
+                    Thread.sleep(30_000);
+                } catch (IOException | InterruptedException ignored) {
+                }
+            });
+            var configuration = new ConfigurationMock()
+                    .with("github.http.idle-timeout", 500L)
+                    .with("github.http.hedge", false);
+            var transport = GitHubHttpTransport.shared(configuration);
+            var uri = URI.create("http://127.0.0.1:%d/repos/whichlicense/stalled".formatted(server.getLocalPort()));
+
+            var started = System.nanoTime();
+            assertThatThrownBy(() -> transport.get(uri, null, configuration, response -> response.body().readAllBytes()))
+                    .isInstanceOf(HttpTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+        }
+    }
+
+    @Test
+    void givenRawFileFetchesWhenTheApiReportedItsBudgetThenTheRemainingBudgetShouldBeUnchanged() throws IOException {
+        try (var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            var reset = System.currentTimeMillis() / 1000 + 3600;
+            Thread.ofVirtual().start(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        var socket = server.accept();
+                        Thread.ofVirtual().start(() -> answer(socket, reset));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+            var base = "http://127.0.0.1:%d".formatted(server.getLocalPort());
+            var configuration = new ConfigurationMock()
+                    .with("github.token", "ghp_rawfetch4321")
+                    .with("github.api.url", base + "/api")
+                    .with("github.raw.url", base + "/raw")
+                    .with("github.http.hedge", false);
+            var transport = GitHubHttpTransport.shared(configuration);
+
+            assertThat(transport.api(URI.create(base + "/api/repos/whichlicense/raw"), configuration).statusCode()).isEqualTo(200);
+            for (var i = 0; i < 5; i++) {
+                assertThat(transport.<byte[]>get(URI.create(base + "/raw/whichlicense/raw/0000000/LICENSE" + i), null, configuration,
+                        response -> response.body().readAllBytes())).isEqualTo("raw".getBytes(StandardCharsets.US_ASCII));
+            }
+            assertThat(GitHubRateLimiter.snapshot()).filteredOn(limit -> limit.credential().equals("token:...4321"))
+                    .singleElement().extracting(GitHubRateLimit::resource, GitHubRateLimit::remaining)
+                    .containsExactly(GitHubRateLimiter.CORE, 50);
+        }
+    }
+
+    @Test
+    void givenTokenPoolWhenRevalidatingCachedResponsesThenEachTokenShouldOnlySendItsOwnEtag() throws IOException {
+        try (var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            var revalidated = new AtomicInteger();
+            var foreign = new AtomicInteger();
+            Thread.ofVirtual().start(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        var socket = server.accept();
+                        Thread.ofVirtual().start(() -> revalidate(socket, revalidated, foreign));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+            var base = "http://127.0.0.1:%d".formatted(server.getLocalPort());
+            var configuration = new ConfigurationMock()
+                    .with("github.tokens", "ghp_poolfirst1111, ghp_poolsecond2222")
+                    .with("github.api.url", base)
+                    .with("github.http.hedge", false);
+            var transport = GitHubHttpTransport.shared(configuration);
+
+            for (var i = 0; i < 12; i++) {
+                var response = transport.api(URI.create(base + "/repos/whichlicense/pooled"), configuration);
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.content()).isEqualTo("{}".getBytes(StandardCharsets.US_ASCII));
+            }
+            assertThat(revalidated.get()).isPositive();
+            assertThat(foreign.get()).isZero();
+        }
+    }
+
+    /**
+     * Answers API requests with rate limit headers and raw file requests without them, like GitHub does.
+     */
+    private static void answer(Socket socket, long reset) {
+        try (socket) {
+            var head = new ByteArrayOutputStream();
+            var input = socket.getInputStream();
+            for (int read; !head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n") && (read = input.read()) >= 0; ) {
+                head.write(read);
+            }
+            var response = head.toString(StandardCharsets.US_ASCII).startsWith("GET /api/") ? """
+                    HTTP/1.1 200 OK\r
+                    X-RateLimit-Limit: 60\r
+                    X-RateLimit-Remaining: 50\r
+                    X-RateLimit-Reset: %d\r
+                    Content-Length: 2\r
+                    Connection: close\r
+                    \r
+                    {}""".formatted(reset) : """
+                    HTTP/1.1 200 OK\r
+                    Content-Length: 3\r
+                    Connection: close\r
+                    \r
+                    raw""";
+            socket.getOutputStream().write(response.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Answers with an {@code ETag} derived from the token of the request, like GitHub does for
+     * responses that vary by {@code Authorization}, and counts conditional requests carrying the
+     * {@code ETag} of another token.
+     */
+    private static void revalidate(Socket socket, AtomicInteger revalidated, AtomicInteger foreign) {
+        try (socket) {
+            var head = new ByteArrayOutputStream();
+            var input = socket.getInputStream();
+            for (int read; !head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n") && (read = input.read()) >= 0; ) {
+                head.write(read);
+            }
+            var headers = head.toString(StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+            var token = header(headers, "authorization");
+            var etag = "\"%s\"".formatted(token.substring(token.length() - 4));
+            var conditional = header(headers, "if-none-match");
+            if (conditional != null && !conditional.equals(etag)) foreign.incrementAndGet();
+            if (etag.equals(conditional)) revalidated.incrementAndGet();
+            var response = etag.equals(conditional) ? """
+                    HTTP/1.1 304 Not Modified\r
+                    ETag: %s\r
+                    Connection: close\r
+                    \r
+                    """.formatted(etag) : """
+                    HTTP/1.1 200 OK\r
+                    ETag: %s\r
+                    Content-Length: 2\r
+                    Connection: close\r
+                    \r
+                    {}""".formatted(etag);
+            socket.getOutputStream().write(response.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String header(String headers, String name) {
+        return headers.lines().filter(line -> line.startsWith(name + ":"))
+                .map(line -> line.substring(name.length() + 1).strip()).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitHubMirrorTest {
+    @TempDir
+    Path directory;
+    GitHubMirror mirror;
+    String head;
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        var work = Files.createDirectory(directory.resolve("work"));
+        assumeTrue(git(work, "init", "-q", "-b", "main", ".") != null);
+        Files.writeString(work.resolve("LICENSE"), "Apache-2.0");
+        git(work, "add", "LICENSE");
+        git(work, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+        git(work, "-c", "user.name=test", "-c", "user.email=test@example.com", "tag", "-a", "v1.0.0", "-m", "release");
+        git(work, "branch", "feature/docs");
+        head = git(work, "rev-parse", "HEAD");
+        var bare = directory.resolve("mirrors").resolve("whichlicense").resolve("core-libs.git");
+        git(work, "clone", "-q", "--mirror", ".", bare.toString());
+        mirror = new GitHubMirror("whichlicense", "core-libs", bare, new GitHubMirror.Settings(directory.resolve("mirrors"), "git", 60));
+    }
+
+    @Test
+    void givenMirroredRepositoryWhenResolvingRefsThenTheCommitShouldBeReturned() {
+        assertThat(mirror.defaultBranch()).isEqualTo("main");
+        assertThat(mirror.shaForBranch("feature/docs")).isEqualTo(head);
+        assertThat(mirror.shaForTag("v1.0.0")).isEqualTo(head);
+        assertThat(mirror.commit(head.substring(0, 7))).isEqualTo(head);
+        assertThat(mirror.tagsForSha(head)).containsExactly("v1.0.0");
+    }
+
+    @Test
+    void givenMirroredRepositoryWhenResolvingUnknownRefsThenNullShouldBeReturned() {
+        assertThat(mirror.shaForBranch("missing")).isNull();
+        assertThat(mirror.shaForTag("v0.0.0")).isNull();
+        assertThat(mirror.commit("0000000")).isNull();
+        assertThat(mirror.commit("--help")).isNull();
+    }
+
+    @Test
+    void givenMirroredRepositoryWhenExportingACommitThenTheTreeShouldBeLaidOutLikeAZipball() throws IOException {
+        var root = mirror.export(head, Files.createDirectory(directory.resolve("export")), null);
+        assertThat(root.getFileName().toString()).isEqualTo("whichlicense-core-libs-" + head.substring(0, 7));
+        assertThat(root.resolve("LICENSE")).hasContent("Apache-2.0");
+    }
+
+    @Test
+    void givenGitThatHangsWhenCallingTheMirrorThenItShouldBeKilledAfterTheTimeout() throws IOException {
+        var hanging = directory.resolve("hanging-git");
+        Files.writeString(hanging, "#!/bin/sh\nexec sleep 60\n");
+        assumeTrue(hanging.toFile().setExecutable(true));
+        var stalled = new GitHubMirror("whichlicense", "core-libs", directory.resolve("mirrors").resolve("whichlicense")
+                .resolve("core-libs.git"), new GitHubMirror.Settings(directory.resolve("mirrors"), hanging.toString(), 1));
+        var started = System.nanoTime();
+        assertThat(stalled.defaultBranch()).isNull();
+        assertThatThrownBy(() -> stalled.export(head, Files.createDirectory(directory.resolve("export")), null))
+                .isInstanceOf(IOException.class).hasMessageContaining("timed out");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(30));
+    }
+
+    private static String git(Path directory, String... arguments) throws IOException, InterruptedException {
+        var command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(arguments));
+        Process process;
+        try {
+            process = new ProcessBuilder(command).directory(directory.toFile())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException exception) {
+            return null;
+        }
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).strip();
+        return process.waitFor() == 0 ? output : null;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.ConfigurationMock;
+import com.whichlicense.metadata.sourcing.repository.github.GitHubRateLimit;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubRateLimiterTest {
+    static final ConfigurationMock CONFIG = new ConfigurationMock();
+
+    @Test
+    void givenForbiddenResponseWithoutRateLimitSignalsWhenCallingRetryThenFalseShouldBeReturned() {
+        assertThat(GitHubRateLimiter.retry(List.of("forbidden-token"), "forbidden-token", GitHubRateLimiter.CORE, 403, headers(Map.of()), "Resource not accessible", 0, CONFIG)).isFalse();
+    }
+
+    @Test
+    void givenTooManyRequestsResponseWithRetryAfterWhenCallingRetryThenTrueShouldBeReturned() {
+        assertThat(GitHubRateLimiter.retry(List.of("retry-token"), "retry-token", GitHubRateLimiter.CORE, 429, headers(Map.of("Retry-After", "0")), "", 0, CONFIG)).isTrue();
+    }
+
+    @Test
+    void givenExhaustedRetriesWhenCallingRetryThenFalseShouldBeReturned() {
+        assertThat(GitHubRateLimiter.retry(List.of("exhausted-token"), "exhausted-token", GitHubRateLimiter.CORE, 429, headers(Map.of("Retry-After", "0")), "", 3, CONFIG)).isFalse();
+    }
+
+    @Test
+    void givenRateLimitHeadersWhenCallingUpdateThenTheMaskedBudgetShouldBeReported() {
+        GitHubRateLimiter.update("ghp_secret1234", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "4999", "X-RateLimit-Reset", "1700000000")));
+        assertThat(GitHubRateLimiter.snapshot()).filteredOn(limit -> limit.credential().equals("token:...1234"))
+                .singleElement().extracting(GitHubRateLimit::limit, GitHubRateLimit::remaining)
+                .containsExactly(5000, 4999);
+    }
+
+    @Test
+    void givenExhaustedTokenWhenCallingSelectThenTheTokenWithHeadroomShouldBeReturned() {
+        var reset = Long.toString(System.currentTimeMillis() / 1000 + 3600);
+        GitHubRateLimiter.update("drained-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", reset)));
+        GitHubRateLimiter.update("fresh-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "10", "X-RateLimit-Reset", reset)));
+        for (var i = 0; i < 10; i++) {
+            assertThat(GitHubRateLimiter.select(List.of("drained-token", "fresh-token"), GitHubRateLimiter.CORE)).isEqualTo("fresh-token");
+        }
+    }
+
+    @Test
+    void givenTokensWithDifferentHeadroomWhenCallingSelectThenTheTokenWithMostRemainingRequestsShouldBeReturned() {
+        var reset = Long.toString(System.currentTimeMillis() / 1000 + 3600);
+        GitHubRateLimiter.update("low-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "20", "X-RateLimit-Reset", reset)));
+        GitHubRateLimiter.update("high-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "4000", "X-RateLimit-Reset", reset)));
+        assertThat(GitHubRateLimiter.select(List.of("low-token", "high-token"), GitHubRateLimiter.CORE)).isEqualTo("high-token");
+    }
+
+    @Test
+    void givenDrainedGraphQLBudgetWhenCallingSelectForCoreThenTheTokenShouldStillBeUsable() {
+        var reset = Long.toString(System.currentTimeMillis() / 1000 + 3600);
+        GitHubRateLimiter.update("graphql-drained-token", "graphql", headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", reset, "X-RateLimit-Resource", "graphql")));
+        GitHubRateLimiter.update("core-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "10", "X-RateLimit-Reset", reset)));
+        assertThat(GitHubRateLimiter.select(List.of("graphql-drained-token", "core-token"), "graphql")).isEqualTo("core-token");
+        assertThat(GitHubRateLimiter.select(List.of("graphql-drained-token", "core-token"), GitHubRateLimiter.CORE))
+                .isEqualTo("graphql-drained-token");
+    }
+
+    @Test
+    void givenRateLimitResourceHeaderWhenCallingUpdateThenTheBudgetOfThatResourceShouldBeReported() {
+        GitHubRateLimiter.update("ghp_search5678", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "30",
+                "X-RateLimit-Remaining", "29", "X-RateLimit-Reset", "1700000000", "X-RateLimit-Resource", "search")));
+        assertThat(GitHubRateLimiter.snapshot()).filteredOn(limit -> limit.credential().equals("token:...5678"))
+                .singleElement().extracting(GitHubRateLimit::resource, GitHubRateLimit::limit)
+                .containsExactly("search", 30);
+    }
+
+    @Test
+    void givenBudgetBelowThePacingThresholdWhenCallingConstrainedThenTrueShouldBeReturned() {
+        var reset = Long.toString(System.currentTimeMillis() / 1000 + 3600);
+        GitHubRateLimiter.update("paced-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "10", "X-RateLimit-Reset", reset)));
+        GitHubRateLimiter.update("unpaced-token", GitHubRateLimiter.CORE, headers(Map.of("X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "4000", "X-RateLimit-Reset", reset)));
+        assertThat(GitHubRateLimiter.constrained("paced-token", GitHubRateLimiter.CORE, CONFIG)).isTrue();
+        assertThat(GitHubRateLimiter.constrained("unpaced-token", GitHubRateLimiter.CORE, CONFIG)).isFalse();
+    }
+
+    @Test
+    void givenApiUrisWhenCallingResourceThenTheRateLimitResourceShouldBeReturned() {
+        assertThat(GitHubRateLimiter.resource(URI.create("https://api.github.com/graphql"))).isEqualTo("graphql");
+        assertThat(GitHubRateLimiter.resource(URI.create("https://ghe.example.com/api/graphql"))).isEqualTo("graphql");
+        assertThat(GitHubRateLimiter.resource(URI.create("https://api.github.com/search/code"))).isEqualTo("search");
+        assertThat(GitHubRateLimiter.resource(URI.create("https://api.github.com/repos/a/b"))).isEqualTo(GitHubRateLimiter.CORE);
+    }
+
+    @Test
+    void givenUrisOutsideTheApiWhenCallingResourceThenNullShouldBeReturned() {
+        assertThat(GitHubRateLimiter.resource(URI.create("https://raw.githubusercontent.com/a/b/sha/LICENSE"), CONFIG)).isNull();
+        assertThat(GitHubRateLimiter.resource(URI.create("https://codeload.github.com/a/b/legacy.zip/sha"), CONFIG)).isNull();
+        assertThat(GitHubRateLimiter.resource(URI.create("https://api.github.com/repos/a/b/zipball/sha"), CONFIG)).isEqualTo(GitHubRateLimiter.CORE);
+        assertThat(GitHubRateLimiter.resource(URI.create("https://api.github.com/graphql"), CONFIG)).isEqualTo("graphql");
+    }
+
+    private static HttpHeaders headers(Map<String, String> values) {
+        var headers = new HashMap<String, List<String>>();
+        values.forEach((name, value) -> headers.put(name, List.of(value)));
+        return HttpHeaders.of(headers, (name, value) -> true);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Hit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.BRANCH;
+import static com.whichlicense.metadata.sourcing.repository.github.internal.GitHubRefCache.Kind.TAG;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubRefCacheTest {
+    @Test
+    void givenStoredAndMissingRefsWhenCallingLookupThenHitsAndNegativeHitsShouldBeCounted() {
+        var cache = new GitHubRefCache(new GitHubRefCache.Settings(Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(1), 16));
+        cache.store(TAG, "v1.0.0", "sha");
+        cache.storeMissing(BRANCH, "unknown");
+        assertThat(cache.<String>lookup(TAG, "v1.0.0")).isEqualTo(new Hit<>("sha"));
+        assertThat(cache.<String>lookup(BRANCH, "unknown")).isEqualTo(new Hit<>(null));
+        assertThat(cache.<String>lookup(BRANCH, "v1.0.0")).isNull();
+        assertThat(cache.snapshot()).satisfies(stats -> {
+            assertThat(stats.hits()).isEqualTo(1);
+            assertThat(stats.negativeHits()).isEqualTo(1);
+            assertThat(stats.misses()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void givenExpiredOrDisabledKindWhenCallingLookupThenNothingShouldBeReturned() {
+        var cache = new GitHubRefCache(new GitHubRefCache.Settings(Duration.ofMinutes(1), Duration.ZERO, Duration.ofMinutes(1), 16));
+        cache.store(TAG, "v1.0.0", "sha");
+        assertThat(cache.<String>lookup(TAG, "v1.0.0")).isNull();
+    }
+
+    @Test
+    void givenMoreEntriesThanTheBoundWhenCallingStoreThenTheOldestEntriesShouldBeEvicted() {
+        var cache = new GitHubRefCache(new GitHubRefCache.Settings(Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(1), 2));
+        cache.store(BRANCH, "first", "a");
+        cache.store(BRANCH, "second", "b");
+        cache.store(BRANCH, "third", "c");
+        assertThat(cache.<String>lookup(BRANCH, "first")).isNull();
+        assertThat(cache.<String>lookup(BRANCH, "third")).isEqualTo(new Hit<>("c"));
+        assertThat(cache.snapshot().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void givenRecentlyLookedUpEntryWhenExceedingTheBoundThenTheLeastRecentlyUsedEntryShouldBeEvicted() {
+        var cache = new GitHubRefCache(new GitHubRefCache.Settings(Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(1), 2));
+        cache.store(BRANCH, "first", "a");
+        cache.store(BRANCH, "second", "b");
+        cache.lookup(BRANCH, "first");
+        cache.store(BRANCH, "third", "c");
+        assertThat(cache.<String>lookup(BRANCH, "first")).isEqualTo(new Hit<>("a"));
+        assertThat(cache.<String>lookup(BRANCH, "second")).isNull();
+        assertThat(cache.snapshot().evictions()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubRescanIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenRecordedResolutionWhenCallingUnchangedWithTheSameShaThenTheEntryShouldBeReturned() throws IOException {
+        var url = new URL("https://github.com/whichlicense/core-libs");
+        var root = Files.createDirectory(directory.resolve("root"));
+        new GitHubRescanIndex(directory.resolve("index.jsonl")).record(url, "streaming-zipball", "sha", Set.of("v1.0.0"), root);
+
+        var reloaded = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        assertThat(reloaded.unchanged(url, "streaming-zipball", "sha")).satisfies(entry -> {
+            assertThat(entry.tags()).containsExactly("v1.0.0");
+            assertThat(entry.root()).isEqualTo(root.toAbsolutePath());
+        });
+        assertThat(reloaded.unchanged(url, "streaming-zipball", "other")).isNull();
+    }
+
+    @Test
+    void givenRecordedResolutionWhenCallingUnchangedWithAnotherVariantThenNullShouldBeReturned() throws IOException {
+        var url = new URL("https://github.com/whichlicense/core-libs");
+        var root = Files.createDirectory(directory.resolve("root"));
+        var index = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        index.record(url, "streaming-zipball-" + ArchiveFilter.of(List.of("LICENSE*")).fingerprint(), "sha", Set.of(), root);
+        assertThat(index.unchanged(url, "streaming-zipball", "sha")).isNull();
+        assertThat(index.unchanged(url, "streaming-zipball-" + ArchiveFilter.of(List.of("COPYING*")).fingerprint(), "sha")).isNull();
+        assertThat(index.unchanged(url, "streaming-zipball-" + ArchiveFilter.of(List.of("LICENSE*")).fingerprint(), "sha")).isNotNull();
+    }
+
+    @Test
+    void givenRecordedResolutionWithDeletedRootWhenCallingUnchangedThenNullShouldBeReturned() throws IOException {
+        var url = new URL("https://github.com/whichlicense/core-libs");
+        var root = Files.createDirectory(directory.resolve("root"));
+        var index = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        index.record(url, "streaming-zipball", "sha", Set.of(), root);
+        Files.delete(root);
+        assertThat(index.unchanged(url, "streaming-zipball", "sha")).isNull();
+    }
+
+    @Test
+    void givenRepeatedlyRecordedUrlWhenLoadingTheIndexThenTheLogShouldBeCompacted() throws IOException {
+        var url = new URL("https://github.com/whichlicense/core-libs");
+        var root = Files.createDirectory(directory.resolve("root"));
+        var index = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        index.record(url, "streaming-zipball", "first", Set.of(), root);
+        index.record(url, "streaming-zipball", "second", Set.of(), root);
+        assertThat(Files.readAllLines(directory.resolve("index.jsonl"))).hasSize(2);
+
+        assertThat(new GitHubRescanIndex(directory.resolve("index.jsonl")).unchanged(url, "streaming-zipball", "second")).isNotNull();
+        assertThat(Files.readAllLines(directory.resolve("index.jsonl"))).hasSize(1);
+    }
+
+    @Test
+    void givenIndexSharedByTwoInstancesWhenOneLoadsThenTheLinesAppendedByTheOtherShouldSurviveTheCompaction() throws IOException {
+        var url = new URL("https://github.com/whichlicense/core-libs");
+        var root = Files.createDirectory(directory.resolve("root"));
+        var first = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        first.record(url, "streaming-zipball", "sha", Set.of(), root);
+        first.record(url, "streaming-zipball", "sha", Set.of("v1.0.0"), root);
+        var second = new GitHubRescanIndex(directory.resolve("index.jsonl"));
+        second.record(url, "streaming-zipball", "sha", Set.of("v1.0.0", "v1.0.1"), root);
+
+        assertThat(new GitHubRescanIndex(directory.resolve("index.jsonl")).unchanged(url, "streaming-zipball", "sha").tags())
+                .containsExactlyInAnyOrder("v1.0.0", "v1.0.1");
+        assertThat(Files.readAllLines(directory.resolve("index.jsonl"))).hasSize(1);
+        assertThat(directory.resolve("index.jsonl.lock")).exists();
+    }
+}
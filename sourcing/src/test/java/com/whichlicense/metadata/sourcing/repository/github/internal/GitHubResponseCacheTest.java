@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.ConfigurationMock;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubResponseCacheTest {
+    static final GitHubResponseCache CACHE = GitHubResponseCache.shared(new ConfigurationMock());
+    static final String ANONYMOUS = GitHubResponseCache.credential(null);
+
+    @Test
+    void givenUnknownUriWhenCallingLookupThenNullShouldBeReturned() {
+        assertThat(CACHE.lookup(URI.create("https://api.github.com/repos/owner/unknown"), ANONYMOUS)).isNull();
+    }
+
+    @Test
+    void givenStoredEntryWhenCallingLookupThenTheEntryShouldBeReturned() {
+        var uri = URI.create("https://api.github.com/repos/owner/stored");
+        var entry = new GitHubResponseCache.Entry("W/\"etag\"", null, new byte[]{1, 2, 3}, Instant.now());
+        CACHE.store(uri, ANONYMOUS, entry);
+        assertThat(CACHE.lookup(uri, ANONYMOUS)).isEqualTo(entry);
+    }
+
+    @Test
+    void givenEntryStoredForATokenWhenCallingLookupWithOtherCredentialsThenNullShouldBeReturned() {
+        var uri = URI.create("https://api.github.com/repos/owner/private");
+        var entry = new GitHubResponseCache.Entry("W/\"etag\"", null, new byte[]{1, 2, 3}, Instant.now());
+        CACHE.store(uri, GitHubResponseCache.credential("ghp_first"), entry);
+        assertThat(CACHE.lookup(uri, GitHubResponseCache.credential("ghp_first"))).isEqualTo(entry);
+        assertThat(CACHE.lookup(uri, GitHubResponseCache.credential("ghp_second"))).isNull();
+        assertThat(CACHE.lookup(uri, ANONYMOUS)).isNull();
+    }
+
+    @Test
+    void givenBodiesExceedingTheBudgetWhenCallingStoreThenTheLeastRecentlyUsedEntriesShouldBeEvicted() {
+        var cache = GitHubResponseCache.shared(new ConfigurationMock().with("github.cache.api.size", 8L));
+        var first = URI.create("https://api.github.com/repos/owner/first");
+        var second = URI.create("https://api.github.com/repos/owner/second");
+        var third = URI.create("https://api.github.com/repos/owner/third");
+        cache.store(first, ANONYMOUS, new GitHubResponseCache.Entry("a", null, new byte[4], Instant.now()));
+        cache.store(second, ANONYMOUS, new GitHubResponseCache.Entry("b", null, new byte[4], Instant.now()));
+        cache.lookup(first, ANONYMOUS);
+        cache.store(third, ANONYMOUS, new GitHubResponseCache.Entry("c", null, new byte[4], Instant.now()));
+        cache.store(URI.create("https://api.github.com/repos/owner/tree"), ANONYMOUS,
+                new GitHubResponseCache.Entry("d", null, new byte[9], Instant.now()));
+        assertThat(cache.lookup(first, ANONYMOUS)).isNotNull();
+        assertThat(cache.lookup(second, ANONYMOUS)).isNull();
+        assertThat(cache.lookup(third, ANONYMOUS)).isNotNull();
+        assertThat(cache.lookup(URI.create("https://api.github.com/repos/owner/tree"), ANONYMOUS)).isNull();
+    }
+
+    @Test
+    void givenDefaultTimeToLiveWhenCallingIsFreshThenFalseShouldBeReturned() {
+        var entry = new GitHubResponseCache.Entry("W/\"etag\"", null, new byte[0], Instant.now());
+        assertThat(CACHE.isFresh(entry)).isFalse();
+    }
+
+    @Test
+    void givenEntryWhenCallingResponseThenTheETagAndLinkHeadersShouldBeReplayed() {
+        var entry = new GitHubResponseCache.Entry("W/\"etag\"", "<https://next>; rel=\"next\"", new byte[]{1}, Instant.now());
+        var response = entry.response();
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("ETag")).contains("W/\"etag\"");
+        assertThat(response.headers().firstValue("Link")).contains("<https://next>; rel=\"next\"");
+        assertThat(response.content()).containsExactly(1);
+    }
+}
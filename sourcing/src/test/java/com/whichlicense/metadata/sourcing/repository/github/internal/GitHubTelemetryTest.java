@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubTelemetryTest {
+    @ParameterizedTest
+    @CsvSource({
+            "https://api.github.com/repos/whichlicense/core-libs, repository",
+            "https://api.github.com/repos/whichlicense/core-libs/branches/main, branch",
+            "https://api.github.com/repos/whichlicense/core-libs/git/ref/tags/v1.0.0, tag",
+            "https://api.github.com/repos/whichlicense/core-libs/git/refs/tags?per_page=100, tags",
+            "https://api.github.com/repos/whichlicense/core-libs/git/trees/sha?recursive=1, tree",
+            "https://api.github.com/repos/whichlicense/core-libs/zipball/sha, zipball",
+            "https://codeload.github.com/whichlicense/core-libs/legacy.zip/sha, archive",
+            "https://raw.githubusercontent.com/whichlicense/core-libs/sha/LICENSE, raw",
+            "https://api.github.com/graphql, graphql",
+            "https://api.github.com/rate_limit, other"
+    })
+    void givenGitHubUriWhenCallingEndpointThenTheEndpointClassShouldBeReturned(String uri, String endpoint) {
+        assertThat(GitHubTelemetry.endpoint(URI.create(uri))).isEqualTo(endpoint);
+    }
+}
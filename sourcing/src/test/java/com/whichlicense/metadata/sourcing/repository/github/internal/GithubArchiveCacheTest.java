@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GithubArchiveCacheTest {
+    @TempDir
+    Path cacheRoot;
+    @TempDir
+    Path extractionRoot;
+
+    @Test
+    void givenEmptyGithubArchiveCacheWhenCallingLookupThenNullShouldBeReturned() {
+        assertThat(new GithubArchiveCache(cacheRoot, 1024).lookup("owner", "repo", "sha")).isNull();
+    }
+
+    @Test
+    void givenStoredArchiveWhenCallingLookupThenTheCachedRootShouldBeReturned() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 1024);
+        var stored = cache.store("owner", "repo", "sha", extracted("owner-repo-sha", 10));
+        assertThat(cache.lookup("owner", "repo", "sha")).isEqualTo(stored);
+        assertThat(stored.getFileName()).hasToString("owner-repo-sha");
+        assertThat(stored.resolve("LICENSE")).hasContent("x".repeat(10));
+    }
+
+    @Test
+    void givenExceededBudgetWhenCallingStoreThenTheLeastRecentlyUsedEntryShouldBeEvicted() throws IOException, InterruptedException {
+        var cache = new GithubArchiveCache(cacheRoot, 25);
+        cache.store("owner", "repo", "first", extracted("first", 10));
+        Thread.sleep(20);
+        cache.store("owner", "repo", "second", extracted("second", 10));
+        Thread.sleep(20);
+        cache.lookup("owner", "repo", "first");
+        cache.store("owner", "repo", "third", extracted("third", 10));
+        assertThat(cache.lookup("owner", "repo", "first")).isNotNull();
+        assertThat(cache.lookup("owner", "repo", "second")).isNull();
+        assertThat(cache.lookup("owner", "repo", "third")).isNotNull();
+    }
+
+    @Test
+    void givenLeasedEntriesWhenExceedingTheBudgetThenTheyShouldNotBeEvicted() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 25, false, Duration.ofMinutes(1));
+        var first = cache.store("owner", "repo", "first", extracted("first", 10));
+        cache.store("owner", "repo", "second", extracted("second", 10));
+        cache.store("owner", "repo", "third", extracted("third", 10));
+        assertThat(cache.lookup("owner", "repo", "first")).isEqualTo(first);
+        assertThat(first.resolve("LICENSE")).hasContent("x".repeat(10));
+        assertThat(cache.lookup("owner", "repo", "second")).isNotNull();
+        assertThat(cache.lookup("owner", "repo", "third")).isNotNull();
+    }
+
+    @Test
+    void givenDeduplicatingCacheWhenStoringIdenticalContentsThenTheTreesShouldShareTheirFiles() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 1024, true);
+        var first = cache.store("owner", "repo", "first", extracted("first", 10));
+        var second = cache.store("owner", "repo", "second", extracted("second", 10));
+        assertThat(Files.isSameFile(first.resolve("LICENSE"), second.resolve("LICENSE"))).isTrue();
+        assertThat(second.resolve("LICENSE")).hasContent("x".repeat(10));
+    }
+
+    @Test
+    void givenDeduplicatingCacheWhenEvictingThenOnlyUnreferencedBlobsShouldBeCollected() throws IOException, InterruptedException {
+        var cache = new GithubArchiveCache(cacheRoot, 25, true);
+        cache.store("owner", "repo", "first", extracted("first", 10));
+        Thread.sleep(20);
+        cache.store("owner", "repo", "second", extracted("second", 12));
+        Thread.sleep(20);
+        cache.lookup("owner", "repo", "first");
+        cache.store("owner", "repo", "third", extracted("third", 8));
+        assertThat(cache.lookup("owner", "repo", "first")).isNotNull();
+        assertThat(cache.lookup("owner", "repo", "second")).isNull();
+        try (var blobs = Files.walk(cacheRoot.resolve(".blobs"))) {
+            assertThat(blobs.filter(Files::isRegularFile).count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void givenDeduplicatingCacheWhenStoringThenTheSizeOfTheBlobStoreShouldBeKeptAsARunningTotal() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 1024, true);
+        cache.store("owner", "repo", "first", extracted("first", 10));
+        cache.store("owner", "repo", "second", extracted("second", 12));
+        cache.store("owner", "repo", "third", extracted("third", 10));
+        cache.store("owner", "repo", "third", extracted("again", 10));
+        assertThat(cacheRoot.resolve(".blobs.size")).hasContent("22");
+    }
+
+    @Test
+    void givenDeduplicatingCacheWhenWritingKnownContentsThroughItsWriterThenTheyShouldBeLinkedInsteadOfWritten() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 1024, true);
+        var first = cache.store("owner", "repo", "first", extracted("first", 10));
+        var tree = Files.createDirectory(cache.scratch().resolve("second"));
+        cache.writer().write(tree.resolve("LICENSE"), "x".repeat(10).getBytes(StandardCharsets.UTF_8));
+        cache.writer().write(tree.resolve("NOTICE"), "y".repeat(4).getBytes(StandardCharsets.UTF_8));
+        assertThat(Files.isSameFile(tree.resolve("LICENSE"), first.resolve("LICENSE"))).isTrue();
+
+        var second = cache.store("owner", "repo", "second", tree);
+        assertThat(Files.isSameFile(second.resolve("LICENSE"), first.resolve("LICENSE"))).isTrue();
+        assertThat(second.resolve("NOTICE")).hasContent("y".repeat(4));
+        assertThat(cacheRoot.resolve(".blobs.size")).hasContent("14");
+    }
+
+    @Test
+    void givenDeduplicatingCacheWhenWritingIdenticalContentsTwiceThroughItsWriterThenTheirBlobShouldBeCountedOnce() throws IOException {
+        var cache = new GithubArchiveCache(cacheRoot, 1024, true);
+        cache.store("owner", "repo", "first", extracted("first", 4));
+        var tree = Files.createDirectory(cache.scratch().resolve("second"));
+        cache.writer().write(tree.resolve("LICENSE"), "x".repeat(10).getBytes(StandardCharsets.UTF_8));
+        cache.writer().write(tree.resolve("COPYING"), "x".repeat(10).getBytes(StandardCharsets.UTF_8));
+        var second = cache.store("owner", "repo", "second", tree);
+        assertThat(Files.isSameFile(second.resolve("LICENSE"), second.resolve("COPYING"))).isTrue();
+        assertThat(cacheRoot.resolve(".blobs.size")).hasContent("14");
+    }
+
+    @Test
+    void givenTraversingKeyWhenCallingLookupThenIllegalArgumentExceptionShouldBeThrown() {
+        assertThatThrownBy(() -> new GithubArchiveCache(cacheRoot, 1024).lookup("owner", "..", "sha"))
+                .isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Path extracted(String name, int size) throws IOException {
+        var root = Files.createDirectories(extractionRoot.resolve(name));
+        Files.writeString(root.resolve("LICENSE"), "x".repeat(size));
+        return root;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.ConfigurationMock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GithubArchiveDownloaderTest {
+    private static final Pattern RANGE = Pattern.compile("(?i)range: bytes=(\\d+)-");
+    private static final Pattern IF_RANGE = Pattern.compile("(?i)if-range: (\\S+)");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenArchiveThatStallsHalfwayWhenDownloadingThenTheRestShouldBeFetchedWithARangeRequest() throws IOException {
+        var archive = zip(42);
+        var requests = new AtomicInteger();
+        try (var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        var socket = server.accept();
+                        Thread.ofVirtual().start(() -> serve(socket, archive, requests.getAndIncrement() == 0));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+            var configuration = new ConfigurationMock()
+                    .with("github.http.idle-timeout", 300L)
+                    .with("github.http.hedge", false)
+                    .with("github.download.backoff", 10L);
+            var uri = URI.create("http://127.0.0.1:%d/whichlicense/stalled/zip/main".formatted(server.getLocalPort()));
+            var target = directory.resolve("archive.zip");
+
+            assertThat(GithubArchiveDownloader.download(uri, target, configuration)).isTrue();
+            assertThat(target).hasBinaryContent(archive);
+            assertThat(requests).hasValue(2);
+        }
+    }
+
+    @Test
+    void givenArchiveRegeneratedBetweenAttemptsWhenResumingThenTheDownloadShouldStartOver() throws IOException {
+        var original = zip(42);
+        var regenerated = zip(7);
+        var requests = new AtomicInteger();
+        try (var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        var socket = server.accept();
+                        var first = requests.getAndIncrement() == 0;
+                        Thread.ofVirtual().start(() -> serve(socket, first ? original : regenerated,
+                                first ? "\"original\"" : "\"regenerated\"", first));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+            var configuration = new ConfigurationMock()
+                    .with("github.http.idle-timeout", 300L)
+                    .with("github.http.hedge", false)
+                    .with("github.download.backoff", 10L);
+            var uri = URI.create("http://127.0.0.1:%d/whichlicense/regenerated/zip/main".formatted(server.getLocalPort()));
+            var target = directory.resolve("archive.zip");
+
+            assertThat(GithubArchiveDownloader.download(uri, target, configuration)).isTrue();
+            assertThat(target).hasBinaryContent(regenerated);
+            assertThat(requests).hasValue(3);
+        }
+    }
+
+    @Test
+    void givenArchiveWithCorruptEntryWhenDownloadingThenAZipExceptionShouldBeThrown() throws IOException {
+        var archive = zip(42);
+        // flips a byte of the stored LICENSE contents, which leaves the zip structure intact
+        archive[archive.length / 2] ^= 0x01;
+        try (var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        var socket = server.accept();
+                        Thread.ofVirtual().start(() -> serve(socket, archive, false));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+            var configuration = new ConfigurationMock().with("github.http.hedge", false);
+            var uri = URI.create("http://127.0.0.1:%d/whichlicense/corrupt/zip/main".formatted(server.getLocalPort()));
+
+            assertThatThrownBy(() -> GithubArchiveDownloader.download(uri, directory.resolve("archive.zip"), configuration))
+                    .isInstanceOf(ZipException.class);
+        }
+    }
+
+    private static void serve(Socket socket, byte[] archive, boolean stall) {
+        serve(socket, archive, null, stall);
+    }
+
+    /**
+     * Answers a range request from its start offset; a stalling answer sends half of it and then
+     * keeps the connection open without sending more.
+     */
+    private static void serve(Socket socket, byte[] archive, String etag, boolean stall) {
+        try (socket) {
+            var head = new ByteArrayOutputStream();
+            var input = socket.getInputStream();
+            for (int read; !head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n") && (read = input.read()) >= 0; ) {
+                head.write(read);
+            }
+            var matcher = RANGE.matcher(head.toString(StandardCharsets.US_ASCII));
+            var validator = IF_RANGE.matcher(head.toString(StandardCharsets.US_ASCII));
+            // a stale If-Range validator gets the whole archive instead of the requested range
+            var changed = validator.find() && !validator.group(1).equals(etag);
+            var start = matcher.find() && !changed ? Integer.parseInt(matcher.group(1)) : 0;
+            var length = archive.length - start;
+            var output = socket.getOutputStream();
+            output.write("""
+                    HTTP/1.1 %s\r
+                    Content-Length: %d\r
+                    %s%sConnection: close\r
+                    \r
+                    """.formatted(changed ? "200 OK" : "206 Partial Content", length,
+                    changed ? "" : "Content-Range: bytes %d-%d/%d\r\n".formatted(start, archive.length - 1, archive.length),
+                    etag == null ? "" : "ETag: %s\r\n".formatted(etag)).getBytes(StandardCharsets.US_ASCII));
+            output.write(archive, start, stall ? length / 2 : length);
+            output.flush();
+            if (stall) Thread.sleep(30_000);
+        } catch (IOException | InterruptedException ignored) {
+        }
+    }
+
+    private static byte[] zip(long seed) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            zip.setLevel(0);
+            zip.putNextEntry(new ZipEntry("whichlicense-stalled-0000000/LICENSE"));
+            var content = new byte[256 * 1024];
+            new Random(seed).nextBytes(content);
+            zip.write(content);
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+}
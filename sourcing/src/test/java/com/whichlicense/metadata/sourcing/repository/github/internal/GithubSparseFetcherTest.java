@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import com.whichlicense.metadata.sourcing.repository.github.ConfigurationMock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GithubSparseFetcherTest {
+    private static final String TREE = """
+            {"sha":"0000000","truncated":false,"tree":[
+            {"path":"LICENSE","type":"blob","size":3},{"path":"NOTICE","type":"blob","size":3}]}""";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenNoIncludeConfiguredWhenCallingFilterThenLicensesAndManifestsShouldBeIncluded() {
+        var filter = GithubSparseFetcher.filter(new ConfigurationMock());
+        assertThat(filter.includes("LICENSE")).isTrue();
+        assertThat(filter.includes("docs/COPYING.txt")).isTrue();
+        assertThat(filter.includes("web/package.json")).isTrue();
+        assertThat(filter.includes("src/Main.java")).isFalse();
+    }
+
+    @Test
+    void givenFileMissingFromRawWhenCallingFetchThenTheOtherFilesShouldBeMaterialized() throws IOException {
+        try (var server = serve(Map.of("/raw/whichlicense/missing/0000000/LICENSE", 200, "/raw/whichlicense/missing/0000000/NOTICE", 404))) {
+            var root = GithubSparseFetcher.fetch("whichlicense", "missing", "0000000", directory,
+                    GithubSparseFetcher.filter(new ConfigurationMock()), configuration(server));
+            assertThat(root.resolve("LICENSE")).hasContent("raw");
+            assertThat(root.resolve("NOTICE")).doesNotExist();
+        }
+    }
+
+    @Test
+    void givenFailingRawDownloadWhenCallingFetchThenAnExceptionShouldBeThrown() throws IOException {
+        try (var server = serve(Map.of("/raw/whichlicense/failing/0000000/LICENSE", 200, "/raw/whichlicense/failing/0000000/NOTICE", 503))) {
+            assertThatThrownBy(() -> GithubSparseFetcher.fetch("whichlicense", "failing", "0000000", directory,
+                    GithubSparseFetcher.filter(new ConfigurationMock()), configuration(server)))
+                    .isInstanceOf(IOException.class).hasMessageContaining("503");
+        }
+    }
+
+    private static ConfigurationMock configuration(ServerSocket server) {
+        var base = "http://127.0.0.1:%d".formatted(server.getLocalPort());
+        return new ConfigurationMock()
+                .with("github.api.url", base + "/api")
+                .with("github.raw.url", base + "/raw")
+                .with("github.http.hedge", false)
+                .with("github.http.breaker.failures", 0);
+    }
+
+    /**
+     * Answers tree requests with {@link #TREE} and raw file requests with the given status.
+     */
+    private static ServerSocket serve(Map<String, Integer> statuses) throws IOException {
+        var server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    var socket = server.accept();
+                    Thread.ofVirtual().start(() -> answer(socket, statuses));
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        return server;
+    }
+
+    private static void answer(Socket socket, Map<String, Integer> statuses) {
+        try (socket) {
+            var head = new ByteArrayOutputStream();
+            var input = socket.getInputStream();
+            for (int read; !head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n") && (read = input.read()) >= 0; ) {
+                head.write(read);
+            }
+            var path = head.toString(StandardCharsets.US_ASCII).split(" ")[1];
+            var status = path.startsWith("/api/") ? 200 : statuses.getOrDefault(path, 404);
+            var body = path.startsWith("/api/") ? TREE : status == 200 ? "raw" : "";
+            socket.getOutputStream().write("""
+                    HTTP/1.1 %d Status\r
+                    Content-Length: %d\r
+                    Connection: close\r
+                    \r
+                    %s""".formatted(status, body.length(), body).getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+        } catch (IOException ignored) {
+        }
+    }
+}
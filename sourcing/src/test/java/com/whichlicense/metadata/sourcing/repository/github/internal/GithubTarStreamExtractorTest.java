@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GithubTarStreamExtractorTest {
+    static final List<String> ENTRIES = List.of("owner-repo-sha/", "owner-repo-sha/LICENSE", "owner-repo-sha/src/",
+            "owner-repo-sha/src/Main.java", "owner-repo-sha/docs/COPYING.txt", "owner-repo-sha/web/package.json");
+
+    @TempDir
+    Path target;
+
+    @Test
+    void givenTarballWithoutFilterWhenCallingExtractThenAllEntriesShouldBeExtractedBelowTheRoot() throws IOException {
+        var root = GithubTarStreamExtractor.extract(tar(ENTRIES), target, null, 4);
+        assertThat(root).isEqualTo(target.toAbsolutePath().resolve("owner-repo-sha"));
+        assertThat(root.resolve("LICENSE")).hasContent("owner-repo-sha/LICENSE");
+        assertThat(root.resolve("src/Main.java")).exists();
+        assertThat(root.resolve("web/package.json")).exists();
+    }
+
+    @Test
+    void givenTarballWithFilterWhenCallingExtractThenOnlyIncludedEntriesShouldBeExtracted() throws IOException {
+        var root = GithubTarStreamExtractor.extract(tar(ENTRIES), target, ArchiveFilter.of(List.of("LICENSE*", "COPYING*")), 1);
+        assertThat(root.resolve("LICENSE")).exists();
+        assertThat(root.resolve("docs/COPYING.txt")).exists();
+        assertThat(root.resolve("src")).doesNotExist();
+        assertThat(root.resolve("web/package.json")).doesNotExist();
+    }
+
+    @Test
+    void givenTarballWithPaxPathWhenCallingExtractThenTheLongNameShouldBeUsed() throws IOException {
+        var name = "owner-repo-sha/" + "nested/".repeat(20) + "LICENSE";
+        var record = " path=" + name + "\n";
+        var length = record.length() + 3;
+        var bytes = new ByteArrayOutputStream();
+        try (var tar = new GZIPOutputStream(bytes)) {
+            entry(tar, "PaxHeader", 'x', (length + record).getBytes(StandardCharsets.UTF_8));
+            entry(tar, "truncated", '0', "pax".getBytes(StandardCharsets.UTF_8));
+            tar.write(new byte[1024]);
+        }
+        var root = GithubTarStreamExtractor.extract(new ByteArrayInputStream(bytes.toByteArray()), target, null, 1);
+        assertThat(root.resolve(name.substring("owner-repo-sha/".length()))).hasContent("pax");
+    }
+
+    @Test
+    void givenTarballWithTraversingEntryWhenCallingExtractThenIOExceptionShouldBeThrown() {
+        assertThatThrownBy(() -> GithubTarStreamExtractor.extract(tar(List.of("owner-repo-sha/../../evil")), target, null, 1))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static ByteArrayInputStream tar(List<String> entries) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var tar = new GZIPOutputStream(bytes)) {
+            for (var entry : entries) {
+                if (entry.endsWith("/")) entry(tar, entry, '5', new byte[0]);
+                else entry(tar, entry, '0', entry.getBytes(StandardCharsets.UTF_8));
+            }
+            tar.write(new byte[1024]);
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+
+    private static void entry(GZIPOutputStream tar, String name, char type, byte[] data) throws IOException {
+        var header = new byte[512];
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, 0, bytes.length);
+        System.arraycopy("%011o".formatted(data.length).getBytes(StandardCharsets.US_ASCII), 0, header, 124, 11);
+        header[156] = (byte) type;
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        var checksum = 0;
+        for (var value : header) checksum += value & 0xff;
+        System.arraycopy("%06o".formatted(checksum).getBytes(StandardCharsets.US_ASCII), 0, header, 148, 6);
+        header[154] = 0;
+        tar.write(header);
+        tar.write(data);
+        tar.write(new byte[(512 - data.length % 512) % 512]);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GithubZipStreamExtractorTest {
+    static final List<String> ENTRIES = List.of("owner-repo-sha/", "owner-repo-sha/LICENSE", "owner-repo-sha/src/",
+            "owner-repo-sha/src/Main.java", "owner-repo-sha/docs/COPYING.txt", "owner-repo-sha/web/package.json");
+
+    @TempDir
+    Path target;
+
+    @Test
+    void givenZipballWithoutFilterWhenCallingExtractThenAllEntriesShouldBeExtractedBelowTheRoot() throws IOException {
+        var root = GithubZipStreamExtractor.extract(zip(ENTRIES), target, null);
+        assertThat(root).isEqualTo(target.toAbsolutePath().resolve("owner-repo-sha"));
+        assertThat(root.resolve("LICENSE")).hasContent("owner-repo-sha/LICENSE");
+        assertThat(root.resolve("src/Main.java")).exists();
+        assertThat(root.resolve("web/package.json")).exists();
+    }
+
+    @Test
+    void givenZipballWithFilterWhenCallingExtractThenOnlyIncludedEntriesShouldBeExtracted() throws IOException {
+        var root = GithubZipStreamExtractor.extract(zip(ENTRIES), target, ArchiveFilter.of(List.of("LICENSE*", "COPYING*")));
+        assertThat(root.resolve("LICENSE")).exists();
+        assertThat(root.resolve("docs/COPYING.txt")).exists();
+        assertThat(root.resolve("src")).doesNotExist();
+        assertThat(root.resolve("web/package.json")).doesNotExist();
+    }
+
+    @Test
+    void givenZipballWithTraversingEntryWhenCallingExtractThenZipExceptionShouldBeThrown() {
+        assertThatThrownBy(() -> GithubZipStreamExtractor.extract(zip(List.of("owner-repo-sha/../../evil")), target, null))
+                .isInstanceOf(ZipException.class);
+    }
+
+    private static ByteArrayInputStream zip(List<String> entries) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            for (var entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                if (!entry.endsWith("/")) zip.write(entry.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
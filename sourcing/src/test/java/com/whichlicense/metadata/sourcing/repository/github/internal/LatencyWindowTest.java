@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyWindowTest {
+    @Test
+    void givenTooFewSamplesWhenCallingPercentileThenMinusOneShouldBeReturned() {
+        var window = new LatencyWindow(8);
+        window.record(10);
+        assertThat(window.percentile(0.95, 2)).isEqualTo(-1);
+    }
+
+    @Test
+    void givenFullWindowWhenRecordingThenTheOldestSamplesShouldBeReplaced() {
+        var window = new LatencyWindow(100);
+        for (var i = 1; i <= 100; i++) window.record(i);
+        assertThat(window.percentile(0.95, 1)).isEqualTo(95);
+        for (var i = 0; i < 100; i++) window.record(1);
+        assertThat(window.percentile(0.95, 1)).isEqualTo(1);
+    }
+}
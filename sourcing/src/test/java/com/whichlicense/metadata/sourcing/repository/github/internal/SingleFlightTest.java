@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository https://github.com/whichlicense/gh-ecosystem.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.whichlicense.metadata.sourcing.repository.github.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    @Test
+    void givenConcurrentCallsWithTheSameKeyWhenCallingExecuteThenTheCallShouldRunOnce() throws Exception {
+        var flight = new SingleFlight<String, String>();
+        var calls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var leader = executor.submit(() -> flight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            started.await();
+            var followers = new ArrayList<Future<String>>();
+            for (var i = 0; i < 8; i++) followers.add(executor.submit(() -> flight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+            Thread.sleep(200);
+            release.countDown();
+            assertThat(leader.get()).isEqualTo("value");
+            for (var follower : followers) assertThat(follower.get()).isEqualTo("value");
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    @Test
+    void givenFailingCallWhenCallingExecuteThenTheEntryShouldBeReleased() throws IOException {
+        var flight = new SingleFlight<String, String>();
+        assertThatThrownBy(() -> flight.execute("key", () -> {
+            throw new IOException("failure");
+        })).isInstanceOf(IOException.class).hasMessage("failure");
+        assertThat(flight.inFlight()).isZero();
+        assertThat(flight.execute("key", () -> "value")).isEqualTo("value");
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            throw new IOException(exception);
+        }
+    }
+}